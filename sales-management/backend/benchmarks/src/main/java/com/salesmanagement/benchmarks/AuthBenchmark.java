@@ -0,0 +1,58 @@
+package com.salesmanagement.benchmarks;
+
+import com.salesmanagement.utils.AuthUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token issuing and password hashing costs. Hashing is expected to be slow (it runs on the
+ * password worker pool); a drop here usually means {@code PASSWORD_HASH_ITERATIONS} changed.
+ * Set that variable before launching to measure another cost factor.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AuthBenchmark {
+    private static final String PASSWORD = "correct horse battery staple";
+
+    private String storedHash;
+
+    @Setup
+    public void setup() {
+        storedHash = AuthUtils.hashPassword(PASSWORD);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    public String generateToken() {
+        return AuthUtils.generateToken(42, "jane@example.com");
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1, time = 5)
+    @Measurement(iterations = 3, time = 5)
+    public String hashPassword() {
+        return AuthUtils.hashPassword(PASSWORD);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1, time = 5)
+    @Measurement(iterations = 3, time = 5)
+    public boolean verifyPassword() {
+        return AuthUtils.verifyPassword(PASSWORD, storedHash);
+    }
+}
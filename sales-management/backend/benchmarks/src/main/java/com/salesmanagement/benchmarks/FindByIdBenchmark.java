@@ -0,0 +1,84 @@
+package com.salesmanagement.benchmarks;
+
+import com.salesmanagement.config.DatabaseConfig;
+import com.salesmanagement.config.MigrationRunner;
+import com.salesmanagement.models.Product;
+import com.salesmanagement.repositories.ProductRepository;
+import com.salesmanagement.repositories.StatementWarmup;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.pgclient.PgPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code ProductRepository.findById} latency against a real database with 64 callers sharing a
+ * {@code DB_POOL_SIZE} pool, with and without the per-connection prepared-statement cache. Sample
+ * mode reports the percentiles; compare {@code p0.99} between the two runs. Without the cache
+ * every call pays a Parse/Describe round trip before executing.
+ *
+ * <p>Needs the Postgres given by the usual {@code DB_*} variables. It migrates the schema and
+ * seeds {@value #ROWS} products if there are fewer, so point it at a scratch database. 64 callers
+ * queue past the concurrency limiter's default budget and some would fail with
+ * {@code OverloadedException}, so set {@code DB_LIMIT_QUEUE_FACTOR=64}; the forked JVM inherits it.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+@Threads(64)
+@State(Scope.Benchmark)
+public class FindByIdBenchmark {
+    private static final int ROWS = 10000;
+
+    @Param({"true", "false"})
+    boolean statementCache;
+
+    private Vertx vertx;
+    private PgPool pool;
+    private ProductRepository productRepository;
+
+    @Setup
+    public void setup() {
+        vertx = Vertx.vertx();
+        pool = PgPool.pool(vertx,
+            DatabaseConfig.connectOptions().setCachePreparedStatements(statementCache),
+            DatabaseConfig.poolOptions().setShared(false));
+        await(MigrationRunner.migrate(vertx, pool)
+            .compose(v -> pool.query("INSERT INTO products (name, category, price, stock)"
+                    + " SELECT 'Product ' || g, 'Category ' || g % 20, 5 + g % 100, 1000"
+                    + " FROM generate_series((SELECT COUNT(*) FROM products) + 1, " + ROWS + ") g")
+                .execute())
+            .compose(v -> statementCache ? StatementWarmup.warm(pool, DatabaseConfig.poolSize()) : Future.succeededFuture()));
+        productRepository = new ProductRepository(pool);
+    }
+
+    @TearDown
+    public void tearDown() {
+        await(vertx.close());
+    }
+
+    @Benchmark
+    public Product findById() {
+        return await(productRepository.findById(ThreadLocalRandom.current().nextInt(1, ROWS + 1)));
+    }
+
+    private static <T> T await(Future<T> future) {
+        return future.toCompletionStage().toCompletableFuture().join();
+    }
+}
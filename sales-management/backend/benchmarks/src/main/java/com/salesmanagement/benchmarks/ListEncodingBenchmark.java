@@ -0,0 +1,149 @@
+package com.salesmanagement.benchmarks;
+
+import com.salesmanagement.models.Customer;
+import com.salesmanagement.models.Order;
+import com.salesmanagement.models.PageCursor;
+import com.salesmanagement.models.Product;
+import com.salesmanagement.repositories.CustomerRepository;
+import com.salesmanagement.repositories.JsonRows;
+import com.salesmanagement.repositories.OrderRepository;
+import com.salesmanagement.repositories.ProductRepository;
+import com.salesmanagement.routes.CustomerRoutes;
+import com.salesmanagement.routes.OrderRoutes;
+import com.salesmanagement.routes.ProductRoutes;
+import io.netty.buffer.ByteBuf;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.Row;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding a 10k-row list response: the old path (row to model to {@code JsonObject} to
+ * {@code String} to {@code Buffer}) against {@link JsonRows} writing rows straight into a pooled
+ * buffer. Run with the GC profiler (the default for {@code benchmarks.jar}) to compare bytes
+ * allocated per response. Setup fails if the two paths don't produce identical bytes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ListEncodingBenchmark {
+    private static final int ROWS = 10_000;
+    private static final String[] PRODUCT_COLUMNS = {"id", "name", "category", "price", "stock", "description"};
+    private static final String[] CUSTOMER_COLUMNS = {"id", "name", "email", "phone", "company", "created_at"};
+    private static final String[] ORDER_COLUMNS = {
+        "id", "created_at", "customer_id", "customer_name", "customer_email", "total",
+        "product_ids", "product_names", "unit_prices", "quantities", "line_totals"
+    };
+
+    @Param({"products", "customers", "orders"})
+    public String table;
+
+    // One extra row so the page has a next cursor, as the repositories query limit + 1
+    private List<Row> rows;
+    private JsonRows.RowWriter writer;
+
+    @Setup
+    public void setup() {
+        rows = new ArrayList<>(ROWS + 1);
+        LocalDateTime createdAt = LocalDateTime.of(2024, 5, 1, 10, 30);
+        for (int i = 0; i <= ROWS; i++) {
+            switch (table) {
+                case "products":
+                    rows.add(Rows.of(PRODUCT_COLUMNS, i + 1, "Product number " + i, i % 3 == 0 ? null : "Electronics",
+                        19.99 + i, i % 50, "Description of product " + i));
+                    break;
+                case "customers":
+                    rows.add(Rows.of(CUSTOMER_COLUMNS, i + 1, "Customer " + i, "customer" + i + "@example.com",
+                        "+1 555 " + i, i % 2 == 0 ? null : "Company " + i, createdAt.minusMinutes(i)));
+                    break;
+                default:
+                    rows.add(Rows.of(ORDER_COLUMNS, i + 1, createdAt.minusMinutes(i), i % 100, "Customer " + i,
+                        i % 2 == 0 ? null : "customer" + i + "@example.com", 59.97,
+                        new Integer[]{1, 2, 3}, new String[]{"Mouse", "Keyboard \"Pro\"", "Cable"},
+                        new Double[]{9.99, 29.99, 19.99}, new Integer[]{1, 1, 1}, new Double[]{9.99, 29.99, 19.99}));
+            }
+        }
+        writer = switch (table) {
+            case "products" -> ProductRepository::writeJson;
+            case "customers" -> CustomerRepository::writeJson;
+            default -> OrderRepository::writeJson;
+        };
+
+        Buffer expected = objectTree();
+        ByteBuf out = JsonRows.pooledBuffer();
+        try {
+            JsonRows.writePage(out, rows, ROWS, writer, this::cursorOf);
+            if (!expected.equals(Buffer.buffer(out.copy()))) {
+                throw new IllegalStateException("Streaming encoder output differs from toJson for " + table);
+            }
+        } finally {
+            out.release();
+        }
+    }
+
+    @Benchmark
+    public Buffer objectTree() {
+        JsonArray items = new JsonArray();
+        String nextCursor = null;
+        for (int i = 0; i < rows.size(); i++) {
+            if (i == ROWS) {
+                nextCursor = cursorOf(rows.get(i - 1));
+                break;
+            }
+            Row row = rows.get(i);
+            switch (table) {
+                case "products":
+                    Product product = ProductRepository.mapRow(row);
+                    items.add(ProductRoutes.toJson(product));
+                    break;
+                case "customers":
+                    Customer customer = CustomerRepository.mapRow(row);
+                    items.add(CustomerRoutes.toJson(customer));
+                    break;
+                default:
+                    Order order = OrderRepository.mapRow(row);
+                    items.add(OrderRoutes.toJson(order));
+            }
+        }
+        // end(String) encodes the string into a new buffer before writing it
+        return Buffer.buffer(new JsonObject()
+            .put("items", items)
+            .put("nextCursor", nextCursor)
+            .encode());
+    }
+
+    @Benchmark
+    public int streaming() {
+        ByteBuf out = JsonRows.pooledBuffer();
+        try {
+            JsonRows.writePage(out, rows, ROWS, writer, this::cursorOf);
+            return out.readableBytes();
+        } finally {
+            out.release();
+        }
+    }
+
+    private String cursorOf(Row row) {
+        LocalDateTime createdAt = "products".equals(table) ? null : row.getLocalDateTime("created_at");
+        return new PageCursor(createdAt, row.getInteger("id")).encode();
+    }
+}
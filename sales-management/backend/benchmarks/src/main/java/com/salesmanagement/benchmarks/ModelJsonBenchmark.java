@@ -0,0 +1,67 @@
+package com.salesmanagement.benchmarks;
+
+import com.salesmanagement.models.Customer;
+import com.salesmanagement.models.Product;
+import com.salesmanagement.routes.CustomerRoutes;
+import com.salesmanagement.routes.ProductRoutes;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Product and customer JSON round trips through the route converters, per row.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ModelJsonBenchmark {
+    private Product product;
+    private Customer customer;
+    private Buffer productBody;
+    private Buffer customerBody;
+
+    @Setup
+    public void setup() {
+        product = new Product(1001, "Wireless Mouse", "Electronics", 24.99, 150,
+            "Ergonomic wireless mouse with a USB receiver");
+        customer = new Customer(7, "Jane Customer", "jane@example.com", "+1 555 0100", "Acme Corp",
+            LocalDateTime.of(2024, 5, 1, 10, 30));
+        productBody = ProductRoutes.toJson(product).toBuffer();
+        customerBody = CustomerRoutes.toJson(customer).toBuffer();
+    }
+
+    @Benchmark
+    public Buffer productToJson() {
+        return ProductRoutes.toJson(product).toBuffer();
+    }
+
+    @Benchmark
+    public Product productFromJson() {
+        return ProductRoutes.fromJson(new JsonObject(productBody));
+    }
+
+    @Benchmark
+    public Buffer customerToJson() {
+        return CustomerRoutes.toJson(customer).toBuffer();
+    }
+
+    @Benchmark
+    public Customer customerFromJson() {
+        return CustomerRoutes.fromJson(new JsonObject(customerBody));
+    }
+}
@@ -0,0 +1,71 @@
+package com.salesmanagement.benchmarks;
+
+import com.salesmanagement.models.Order;
+import com.salesmanagement.models.Order.OrderItem;
+import com.salesmanagement.routes.OrderRoutes;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Order request and response conversion as the routes do it: {@code toJson} plus encoding for a
+ * response, and decoding plus {@code fromJson} for a create request body.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrderJsonBenchmark {
+    @Param({"1", "5", "20"})
+    public int itemsPerOrder;
+
+    private Order order;
+    private Buffer requestBody;
+
+    @Setup
+    public void setup() {
+        List<OrderItem> items = new ArrayList<>(itemsPerOrder);
+        double total = 0;
+        for (int i = 0; i < itemsPerOrder; i++) {
+            double unitPrice = 19.99 + i;
+            int quantity = 1 + i % 4;
+            items.add(new OrderItem(1000 + i, "Product number " + i, unitPrice, quantity, unitPrice * quantity));
+            total += unitPrice * quantity;
+        }
+        order = new Order(42, LocalDateTime.of(2024, 5, 1, 10, 30), 7, "Jane Customer", "jane@example.com",
+            items, total);
+        requestBody = OrderRoutes.toJson(order).toBuffer();
+    }
+
+    @Benchmark
+    public JsonObject toJson() {
+        return OrderRoutes.toJson(order);
+    }
+
+    @Benchmark
+    public Buffer toJsonEncoded() {
+        return OrderRoutes.toJson(order).toBuffer();
+    }
+
+    @Benchmark
+    public Order fromJsonDecoded() {
+        return OrderRoutes.fromJson(new JsonObject(requestBody));
+    }
+}
@@ -0,0 +1,126 @@
+package com.salesmanagement.benchmarks;
+
+import com.salesmanagement.models.Order;
+import com.salesmanagement.models.Order.OrderItem;
+import com.salesmanagement.repositories.OrderRepository;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.Row;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-row cost of turning an order row into an {@link Order}: the old layout (items as a JSONB
+ * document, decoded from text by the client and then walked) against the normalized layout
+ * (items as parallel arrays aggregated from {@code order_items}).
+ *
+ * <p>Binary array decoding in the client isn't included on the array side; it is a fixed-width
+ * copy and small next to JSON parsing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrderRowMappingBenchmark {
+    private static final String[] JSONB_COLUMNS = {
+        "id", "created_at", "customer_id", "customer_name", "customer_email", "items", "total"
+    };
+    private static final String[] ARRAY_COLUMNS = {
+        "id", "created_at", "customer_id", "customer_name", "customer_email", "total",
+        "product_ids", "product_names", "unit_prices", "quantities", "line_totals"
+    };
+
+    @Param({"1", "5", "20"})
+    public int itemsPerOrder;
+
+    private String itemsText;
+    private Row arrayRow;
+
+    @Setup
+    public void setup() {
+        JsonArray items = new JsonArray();
+        Integer[] productIds = new Integer[itemsPerOrder];
+        String[] productNames = new String[itemsPerOrder];
+        Double[] unitPrices = new Double[itemsPerOrder];
+        Integer[] quantities = new Integer[itemsPerOrder];
+        Double[] lineTotals = new Double[itemsPerOrder];
+        for (int i = 0; i < itemsPerOrder; i++) {
+            productIds[i] = 1000 + i;
+            productNames[i] = "Product number " + i;
+            unitPrices[i] = 19.99 + i;
+            quantities[i] = 1 + i % 4;
+            lineTotals[i] = unitPrices[i] * quantities[i];
+            items.add(new JsonObject()
+                .put("productId", productIds[i])
+                .put("productName", productNames[i])
+                .put("unitPrice", unitPrices[i])
+                .put("quantity", quantities[i])
+                .put("lineTotal", lineTotals[i]));
+        }
+        itemsText = items.encode();
+
+        LocalDateTime createdAt = LocalDateTime.of(2024, 5, 1, 10, 30);
+        arrayRow = Rows.of(ARRAY_COLUMNS, 42, createdAt, 7, "Jane Customer", "jane@example.com", 123.45,
+            productIds, productNames, unitPrices, quantities, lineTotals);
+    }
+
+    @Benchmark
+    public Order jsonbLayout() {
+        // The client parses the JSONB text into a JsonArray before the row reaches the mapper
+        JsonArray items = (JsonArray) Json.decodeValue(itemsText);
+        Row row = Rows.of(JSONB_COLUMNS, 42, LocalDateTime.of(2024, 5, 1, 10, 30), 7,
+            "Jane Customer", "jane@example.com", items, 123.45);
+        return mapJsonbRow(row);
+    }
+
+    @Benchmark
+    public Order arrayLayout() {
+        return OrderRepository.mapRow(arrayRow);
+    }
+
+    // The mapper as it was before order_items, kept here as the baseline
+    private static Order mapJsonbRow(Row row) {
+        JsonArray itemsJson = row.get(JsonArray.class, row.getColumnIndex("items"));
+        List<OrderItem> items = new ArrayList<>();
+
+        if (itemsJson != null) {
+            for (int i = 0; i < itemsJson.size(); i++) {
+                JsonObject itemJson = itemsJson.getJsonObject(i);
+                items.add(new OrderItem(
+                    itemJson.getInteger("productId"),
+                    itemJson.getString("productName"),
+                    itemJson.getDouble("unitPrice"),
+                    itemJson.getInteger("quantity"),
+                    itemJson.getDouble("lineTotal")
+                ));
+            }
+        }
+
+        return new Order(
+            row.getInteger("id"),
+            row.getLocalDateTime("created_at"),
+            row.getInteger("customer_id"),
+            row.getString("customer_name"),
+            row.getString("customer_email"),
+            items,
+            row.getDouble("total")
+        );
+    }
+}
@@ -0,0 +1,59 @@
+package com.salesmanagement.benchmarks;
+
+import com.salesmanagement.utils.RateLimiter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one {@link RateLimiter#tryAcquire} per request with 8 threads, as event loops would
+ * call it: spread over many client keys, and all on one key (the worst case for CAS contention).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class RateLimiterBenchmark {
+    private static final int KEYS = 4096;
+
+    private RateLimiter limiter;
+    private String[] keys;
+
+    @Setup
+    public void setup() {
+        // High enough that the benchmark measures the bookkeeping, not rejections
+        limiter = new RateLimiter(1_000_000_000, 1, TimeUnit.SECONDS);
+        keys = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = "10.0." + (i >> 8) + "." + (i & 255);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public long manyKeys(Cursor cursor) {
+        return limiter.tryAcquire(keys[cursor.next++ & (KEYS - 1)]);
+    }
+
+    @Benchmark
+    public long oneKey() {
+        return limiter.tryAcquire(keys[0]);
+    }
+}
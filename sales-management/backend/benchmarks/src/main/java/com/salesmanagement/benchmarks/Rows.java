@@ -0,0 +1,60 @@
+package com.salesmanagement.benchmarks;
+
+import io.vertx.pgclient.impl.RowImpl;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.desc.ColumnDescriptor;
+import io.vertx.sqlclient.impl.RowDesc;
+
+import java.sql.JDBCType;
+
+/**
+ * Builds Postgres client {@link Row}s in memory so repository row mappers can be measured
+ * without a database. Values must already be in the Java types the client decodes to.
+ */
+final class Rows {
+    private Rows() {
+    }
+
+    static Row of(String[] columns, Object... values) {
+        RowImpl row = new RowImpl(new Desc(columns));
+        for (Object value : values) {
+            row.addValue(value);
+        }
+        return row;
+    }
+
+    private static final class Desc extends RowDesc {
+        private Desc(String[] columns) {
+            super(descriptors(columns));
+        }
+
+        private static ColumnDescriptor[] descriptors(String[] columns) {
+            ColumnDescriptor[] descriptors = new ColumnDescriptor[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                String name = columns[i];
+                descriptors[i] = new ColumnDescriptor() {
+                    @Override
+                    public String name() {
+                        return name;
+                    }
+
+                    @Override
+                    public boolean isArray() {
+                        return false;
+                    }
+
+                    @Override
+                    public String typeName() {
+                        return null;
+                    }
+
+                    @Override
+                    public JDBCType jdbcType() {
+                        return JDBCType.OTHER;
+                    }
+                };
+            }
+            return descriptors;
+        }
+    }
+}
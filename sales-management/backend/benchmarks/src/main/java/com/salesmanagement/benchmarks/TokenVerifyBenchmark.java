@@ -0,0 +1,65 @@
+package com.salesmanagement.benchmarks;
+
+import com.salesmanagement.utils.TokenService;
+import io.vertx.ext.auth.User;
+import io.vertx.ext.auth.authentication.TokenCredentials;
+import io.vertx.ext.auth.jwt.JWTAuth;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bearer token verification throughput: a plain {@link JWTAuth} (signature check and claim
+ * parsing on every call) against {@link TokenService} with its verified-token cache.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class TokenVerifyBenchmark {
+    private static final int TOKENS = 256;
+
+    private JWTAuth jwtAuth;
+    private TokenService tokenService;
+    private String[] tokens;
+
+    @Setup
+    public void setup() {
+        jwtAuth = TokenService.createJwtAuth();
+        tokenService = new TokenService(jwtAuth, 10000);
+        tokens = new String[TOKENS];
+        for (int i = 0; i < TOKENS; i++) {
+            tokens[i] = tokenService.generateToken(i + 1, "user" + i + "@example.com");
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public User verifyUncached(Cursor cursor) {
+        String token = tokens[cursor.next++ & (TOKENS - 1)];
+        return jwtAuth.authenticate(new TokenCredentials(token)).result();
+    }
+
+    @Benchmark
+    public User verifyCached(Cursor cursor) {
+        String token = tokens[cursor.next++ & (TOKENS - 1)];
+        return tokenService.verify(token).result();
+    }
+}
@@ -0,0 +1,43 @@
+#!/usr/bin/env bash
+# Measures requests/second against the fat jar for an increasing number of verticle instances.
+#
+# Usage: scripts/load-test.sh [path] [instance counts...]
+#   scripts/load-test.sh /api/products?limit=50 1 2 4 8
+#
+# Requires wrk (https://github.com/wg/wrk) and a database reachable with the usual DB_* variables.
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+TARGET_PATH="${1:-/api/products?limit=50}"
+shift || true
+INSTANCE_COUNTS=("${@:-1 2 4 $(nproc)}")
+PORT="${HTTP_PORT:-8080}"
+JAR="target/sales-management-backend-1.0.0-fat.jar"
+DURATION="${LOAD_TEST_DURATION:-30s}"
+CONNECTIONS="${LOAD_TEST_CONNECTIONS:-256}"
+THREADS="${LOAD_TEST_THREADS:-8}"
+
+command -v wrk >/dev/null || { echo "wrk is required" >&2; exit 1; }
+[ -f "$JAR" ] || mvn -B -q package -DskipTests
+
+printf '%-10s %s\n' "instances" "requests/sec"
+for instances in ${INSTANCE_COUNTS[*]}; do
+    # One client at full speed would otherwise mostly measure 429s
+    HTTP_PORT="$PORT" HTTP_INSTANCES="$instances" RATE_LIMIT_IP=0 RATE_LIMIT_READ=0 RATE_LIMIT_WRITE=0 \
+        java -jar "$JAR" >/dev/null 2>&1 &
+    server_pid=$!
+
+    until curl -sf "http://localhost:${PORT}/health" >/dev/null; do
+        sleep 0.5
+    done
+
+    # Warm up the JIT before measuring
+    wrk -t"$THREADS" -c"$CONNECTIONS" -d10s "http://localhost:${PORT}${TARGET_PATH}" >/dev/null
+    rps=$(wrk -t"$THREADS" -c"$CONNECTIONS" -d"$DURATION" "http://localhost:${PORT}${TARGET_PATH}" \
+        | awk '/Requests\/sec/ {print $2}')
+    printf '%-10s %s\n' "$instances" "$rps"
+
+    kill "$server_pid"
+    wait "$server_pid" 2>/dev/null || true
+done
@@ -0,0 +1,87 @@
+#!/usr/bin/env bash
+# Compares page-query latency of the JSONB order layout against the normalized order_items
+# layout on a scratch database seeded with ORDER_COUNT orders (default 1M). The seed uses the
+# old layout and migration 004 then backfills order_items, so its runtime is reported too.
+#
+# Usage: scripts/order-layout-benchmark.sh
+# Requires psql, createdb/dropdb and pgbench; connection settings come from the usual DB_* variables.
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+export PGHOST="${DB_HOST:-localhost}" PGPORT="${DB_PORT:-5432}" PGUSER="${DB_USER:-postgres}" PGPASSWORD="${DB_PASSWORD:-postgres}"
+BENCH_DB="${BENCH_DB:-sales_management_bench}"
+ORDER_COUNT="${ORDER_COUNT:-1000000}"
+DURATION="${BENCH_DURATION:-30}"
+CLIENTS="${BENCH_CLIENTS:-8}"
+MIGRATIONS=src/main/resources/db/migration
+WORK_DIR="$(mktemp -d)"
+trap 'rm -rf "$WORK_DIR"' EXIT
+
+dropdb --if-exists "$BENCH_DB"
+createdb "$BENCH_DB"
+for f in "$MIGRATIONS"/00[1-3]_*.sql; do
+    psql -q -d "$BENCH_DB" -f "$f"
+done
+
+echo "Seeding $ORDER_COUNT orders (1-5 JSONB items each)..."
+psql -q -d "$BENCH_DB" <<SQL
+INSERT INTO customers (name, email, created_at)
+SELECT 'Customer ' || g, 'customer' || g || '@example.com', now() FROM generate_series(1, 1000) g;
+INSERT INTO products (name, category, price, stock)
+SELECT 'Product ' || g, 'Category ' || g % 20, 5 + g % 100, 1000000 FROM generate_series(1, 1000) g;
+INSERT INTO orders (created_at, customer_id, customer_name, customer_email, items, total)
+SELECT now() - make_interval(secs => g),
+       1 + g % 1000,
+       'Customer ' || 1 + g % 1000,
+       'customer' || 1 + g % 1000 || '@example.com',
+       (SELECT jsonb_agg(jsonb_build_object(
+                   'productId', 1 + (g * 7 + k) % 1000,
+                   'productName', 'Product ' || 1 + (g * 7 + k) % 1000,
+                   'unitPrice', 19.99,
+                   'quantity', 1 + k % 3,
+                   'lineTotal', 19.99 * (1 + k % 3)))
+          FROM generate_series(1, 1 + g % 5) k),
+       0
+FROM generate_series(1, $ORDER_COUNT) g;
+ANALYZE;
+SQL
+
+echo "Applying 004_create_order_items.sql (backfill)..."
+start=$(date +%s.%N)
+psql -q -d "$BENCH_DB" -f "$MIGRATIONS/004_create_order_items.sql"
+psql -q -d "$BENCH_DB" -c "ANALYZE"
+echo "backfill took $(echo "$(date +%s.%N) - $start" | bc) s"
+
+# Both scripts read one 50-order page starting at a random keyset position
+cat > "$WORK_DIR/jsonb.sql" <<SQL
+\set n random(1, $ORDER_COUNT)
+SELECT id, created_at, customer_id, customer_name, customer_email, items, total FROM orders
+WHERE (created_at, id) < (SELECT created_at, id FROM orders WHERE id = :n)
+ORDER BY created_at DESC, id DESC LIMIT 50;
+SQL
+
+cat > "$WORK_DIR/items.sql" <<SQL
+\set n random(1, $ORDER_COUNT)
+SELECT o.id, o.created_at, o.customer_id, o.customer_name, o.customer_email, o.total,
+       i.product_ids, i.product_names, i.unit_prices, i.quantities, i.line_totals
+FROM (SELECT id, created_at, customer_id, customer_name, customer_email, total FROM orders
+      WHERE (created_at, id) < (SELECT created_at, id FROM orders WHERE id = :n)
+      ORDER BY created_at DESC, id DESC LIMIT 50) o
+LEFT JOIN LATERAL (
+    SELECT array_agg(product_id ORDER BY line_no) AS product_ids,
+           array_agg(product_name ORDER BY line_no) AS product_names,
+           array_agg(unit_price::float8 ORDER BY line_no) AS unit_prices,
+           array_agg(quantity ORDER BY line_no) AS quantities,
+           array_agg(line_total::float8 ORDER BY line_no) AS line_totals
+    FROM order_items WHERE order_id = o.id) i ON true
+ORDER BY o.created_at DESC, o.id DESC;
+SQL
+
+for layout in jsonb items; do
+    echo "== $layout layout =="
+    pgbench -n -M prepared -c "$CLIENTS" -j "$CLIENTS" -T "$DURATION" -f "$WORK_DIR/$layout.sql" "$BENCH_DB" \
+        | grep -E "latency average|latency stddev|tps"
+done
+
+echo "Row mapping cost: cd benchmarks && java -jar target/benchmarks.jar OrderRowMapping"
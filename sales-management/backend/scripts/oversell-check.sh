@@ -0,0 +1,55 @@
+#!/usr/bin/env bash
+# Fires many concurrent orders at one low-stock product and checks that stock never goes
+# negative and that exactly `stock` orders succeed. Prints order throughput.
+#
+# Usage: scripts/oversell-check.sh [orders] [concurrency] [stock]
+#   scripts/oversell-check.sh 2000 200 25
+#
+# Requires a running server (BASE_URL, default http://localhost:8080), curl and jq. Start it with
+# RATE_LIMIT_IP=0 RATE_LIMIT_WRITE=0, or most orders are rejected with 429 before reaching the stock check.
+set -euo pipefail
+
+ORDERS="${1:-2000}"
+CONCURRENCY="${2:-200}"
+STOCK="${3:-25}"
+BASE_URL="${BASE_URL:-http://localhost:8080}"
+RUN_ID="$(date +%s)-$$"
+
+command -v jq >/dev/null || { echo "jq is required" >&2; exit 1; }
+
+json() { curl -sf -H "Content-Type: application/json" "$@"; }
+
+token=$(json -X POST "$BASE_URL/api/auth/signup" \
+    -d "{\"name\":\"Load Test\",\"email\":\"load-$RUN_ID@example.com\",\"password\":\"load-test-password\"}" | jq -r .token)
+auth=(-H "Authorization: Bearer $token")
+
+product_id=$(json "${auth[@]}" -X POST "$BASE_URL/api/products" \
+    -d "{\"name\":\"Contended $RUN_ID\",\"price\":10.00,\"stock\":$STOCK}" | jq -r .id)
+customer_id=$(json "${auth[@]}" -X POST "$BASE_URL/api/customers" \
+    -d "{\"name\":\"Load Test\",\"email\":\"load-$RUN_ID@example.com\"}" | jq -r .id)
+
+order="{\"customerId\":$customer_id,\"customerName\":\"Load Test\",\"items\":[{\"productId\":$product_id,\"quantity\":1}]}"
+export BASE_URL token order
+
+start=$(date +%s.%N)
+statuses=$(seq "$ORDERS" | xargs -P "$CONCURRENCY" -I{} sh -c \
+    'curl -s -o /dev/null -w "%{http_code}\n" -H "Content-Type: application/json" \
+        -H "Authorization: Bearer $token" -X POST "$BASE_URL/api/orders" -d "$order"')
+elapsed=$(echo "$(date +%s.%N) - $start" | bc)
+
+created=$(grep -c '^201$' <<<"$statuses" || true)
+rejected=$(grep -c '^409$' <<<"$statuses" || true)
+remaining=$(json "${auth[@]}" "$BASE_URL/api/products/$product_id" | jq -r .stock)
+
+echo "orders sent:      $ORDERS (concurrency $CONCURRENCY)"
+echo "created (201):    $created"
+echo "out of stock:     $rejected"
+echo "other:            $((ORDERS - created - rejected))"
+echo "remaining stock:  $remaining"
+printf 'throughput:       %.0f orders/s\n' "$(echo "$ORDERS / $elapsed" | bc -l)"
+
+if [ "$remaining" -lt 0 ] || [ "$created" -ne $((STOCK - remaining)) ] || [ "$created" -gt "$STOCK" ]; then
+    echo "FAIL: stock accounting is inconsistent" >&2
+    exit 1
+fi
+echo "OK: no overselling"
@@ -0,0 +1,115 @@
+#!/usr/bin/env bash
+# Measures product and customer search latency on a scratch database seeded with ROW_COUNT
+# products and customers (default 1M each), with all migrations applied. The queries are the
+# ones ProductRepository and CustomerRepository send for ?q=, company and filters: substring
+# terms that match a few rows, 1-2 character prefixes (some matching nothing), and common words.
+# Searches run as unnamed statements, as the application sends them (see DatabaseConfig).
+#
+# Usage: scripts/search-benchmark.sh
+# Requires psql, createdb/dropdb and pgbench; connection settings come from the usual DB_* variables.
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+export PGHOST="${DB_HOST:-localhost}" PGPORT="${DB_PORT:-5432}" PGUSER="${DB_USER:-postgres}" PGPASSWORD="${DB_PASSWORD:-postgres}"
+BENCH_DB="${BENCH_DB:-sales_management_bench}"
+ROW_COUNT="${ROW_COUNT:-1000000}"
+DURATION="${BENCH_DURATION:-30}"
+CLIENTS="${BENCH_CLIENTS:-8}"
+MIGRATIONS=src/main/resources/db/migration
+WORK_DIR="$(mktemp -d)"
+trap 'rm -rf "$WORK_DIR"' EXIT
+
+dropdb --if-exists "$BENCH_DB"
+createdb "$BENCH_DB"
+for f in "$MIGRATIONS"/*.sql; do
+    psql -q -d "$BENCH_DB" -f "$f"
+done
+
+echo "Seeding $ROW_COUNT products and customers..."
+psql -q -d "$BENCH_DB" <<SQL
+INSERT INTO products (name, category, price, stock)
+SELECT (ARRAY['Cable', 'Camera', 'Charger', 'Desk', 'Drill', 'Fan', 'Hammer', 'Headphones', 'Keyboard', 'Lamp',
+              'Laptop', 'Monitor', 'Mouse', 'Phone', 'Printer', 'Router', 'Speaker', 'Tablet', 'Television', 'Watch'])[1 + g % 20]
+       || ' ' || md5(g::text), 'Category ' || g % 50, 1 + g % 1000, g % 7
+FROM generate_series(1, $ROW_COUNT) g;
+INSERT INTO customers (name, email, company, created_at)
+SELECT (ARRAY['Alice', 'Amir', 'Anna', 'Ben', 'Carla', 'Chen', 'David', 'Elena', 'Farah', 'Grace',
+              'Hugo', 'Ivan', 'Julia', 'Kenji', 'Laura', 'Maria', 'Mateo', 'Nora', 'Omar', 'Sofia'])[1 + g % 20]
+       || ' ' || md5(g::text), 'customer' || g || '@example.com', 'Company ' || md5((g % 5000)::text),
+       now() - make_interval(secs => g)
+FROM generate_series(1, $ROW_COUNT) g;
+ANALYZE;
+SQL
+
+# A 4-character slice of a random row's name: a substring match on a few hundred rows
+cat > "$WORK_DIR/products-q.sql" <<SQL
+\set n random(1, $ROW_COUNT)
+SELECT id, name, category, price, stock, description FROM products
+WHERE name ILIKE '%' || substr(md5(:n::text), 1, 4) || '%'
+ORDER BY id LIMIT 51;
+SQL
+
+# 1-2 characters: a prefix match, from very common ("c") to none at all ("xq")
+cat > "$WORK_DIR/products-prefix.sql" <<SQL
+\set t random(1, 12)
+SELECT id, name, category, price, stock, description FROM products
+WHERE lower(name) LIKE lower((ARRAY['c', 'd', 'x', 'ca', 'ch', 'la', 'mo', 'pr', 'ta', 'xq', 'zz', 'q'])[:t] || '%')
+ORDER BY id LIMIT 51;
+SQL
+
+# A whole word, matching 5% of the table
+cat > "$WORK_DIR/products-common.sql" <<SQL
+\set t random(1, 4)
+SELECT id, name, category, price, stock, description FROM products
+WHERE name ILIKE '%' || (ARRAY['lamp', 'mouse', 'tablet', 'router'])[:t] || '%'
+ORDER BY id LIMIT 51;
+SQL
+
+cat > "$WORK_DIR/products-filters.sql" <<SQL
+\set c random(0, 49)
+\set p random(1, 900)
+SELECT id, name, category, price, stock, description FROM products
+WHERE category = 'Category ' || :c AND price >= :p::numeric AND price <= (:p + 100)::numeric AND stock > 0
+ORDER BY id LIMIT 51;
+SQL
+
+cat > "$WORK_DIR/customers-q.sql" <<SQL
+\set n random(1, $ROW_COUNT)
+SELECT id, name, email, phone, company, created_at FROM customers
+WHERE name ILIKE '%' || substr(md5(:n::text), 1, 4) || '%'
+ORDER BY created_at DESC, id DESC LIMIT 51;
+SQL
+
+cat > "$WORK_DIR/customers-prefix.sql" <<SQL
+\set t random(1, 12)
+SELECT id, name, email, phone, company, created_at FROM customers
+WHERE lower(name) LIKE lower((ARRAY['a', 'c', 'x', 'al', 'an', 'ch', 'da', 'ma', 'no', 'xq', 'zz', 'q'])[:t] || '%')
+ORDER BY created_at DESC, id DESC LIMIT 51;
+SQL
+
+cat > "$WORK_DIR/customers-common.sql" <<SQL
+\set t random(1, 4)
+SELECT id, name, email, phone, company, created_at FROM customers
+WHERE name ILIKE '%' || (ARRAY['maria', 'omar', 'kenji', 'nora'])[:t] || '%'
+ORDER BY created_at DESC, id DESC LIMIT 51;
+SQL
+
+cat > "$WORK_DIR/customers-company.sql" <<SQL
+\set n random(0, 4999)
+SELECT id, name, email, phone, company, created_at FROM customers
+WHERE company ILIKE '%' || substr(md5(:n::text), 1, 4) || '%'
+ORDER BY created_at DESC, id DESC LIMIT 51;
+SQL
+
+run() {
+    echo "== $1 =="
+    pgbench -n -M "$2" -c "$CLIENTS" -j "$CLIENTS" -T "$DURATION" -f "$WORK_DIR/$1.sql" "$BENCH_DB" \
+        | grep -E "latency average|latency stddev|tps"
+}
+
+# Searches aren't kept in the statement cache, so they're planned with their actual pattern
+for script in products-q products-prefix products-common customers-q customers-prefix customers-common customers-company; do
+    run "$script" extended
+done
+run products-filters prepared
@@ -0,0 +1,60 @@
+package com.salesmanagement;
+
+import com.salesmanagement.config.DatabaseConfig;
+import com.salesmanagement.config.MetricsConfig;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entry point that deploys one {@link MainVerticle} per event loop. The HTTP server port is
+ * shared by all instances and Vert.x round-robins incoming connections between them. Background
+ * verticles such as {@link ReportRollupVerticle}, {@link OutboxRelayVerticle},
+ * {@link IdempotencyKeyExpiryVerticle}, {@link CustomerOrderSyncVerticle} and
+ * {@link ReplicaMonitorVerticle} are deployed once alongside them.
+ */
+public class Application {
+    private static final Logger logger = LoggerFactory.getLogger(Application.class);
+    private static final int HTTP_PORT = Integer.parseInt(System.getenv().getOrDefault("HTTP_PORT", "8080"));
+    private static final int HTTP_INSTANCES = Integer.parseInt(System.getenv().getOrDefault("HTTP_INSTANCES",
+        String.valueOf(Runtime.getRuntime().availableProcessors())));
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    public static void main(String[] args) {
+        Vertx vertx = Vertx.vertx(MetricsConfig.vertxOptions());
+
+        DeploymentOptions options = new DeploymentOptions()
+            .setInstances(HTTP_INSTANCES)
+            .setConfig(new JsonObject().put("http.port", HTTP_PORT));
+
+        vertx.deployVerticle(MainVerticle.class.getName(), options)
+            .onSuccess(id -> logger.info("Deployed {} instances of MainVerticle", HTTP_INSTANCES))
+            // Background jobs run once per process, not once per event loop
+            .compose(id -> vertx.deployVerticle(new ReportRollupVerticle()))
+            .compose(id -> vertx.deployVerticle(new OutboxRelayVerticle()))
+            .compose(id -> vertx.deployVerticle(new IdempotencyKeyExpiryVerticle()))
+            .compose(id -> vertx.deployVerticle(new CustomerOrderSyncVerticle()))
+            .compose(id -> DatabaseConfig.replicaHosts().isEmpty()
+                ? Future.succeededFuture(id)
+                : vertx.deployVerticle(new ReplicaMonitorVerticle()))
+            .onFailure(err -> {
+                logger.error("Failed to deploy verticles", err);
+                vertx.close();
+            });
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            logger.info("Shutting down");
+            try {
+                // Undeploys every instance (closing the shared pool) before the JVM exits
+                vertx.close().toCompletionStage().toCompletableFuture().get(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                logger.error("Error during shutdown", e);
+            }
+        }));
+    }
+}
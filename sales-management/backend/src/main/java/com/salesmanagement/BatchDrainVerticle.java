@@ -0,0 +1,93 @@
+package com.salesmanagement;
+
+import com.salesmanagement.config.DatabaseConfig;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.pgclient.PgPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Base for background jobs that work off a backlog in batches. Every tick drains batches until one
+ * comes back short of {@code batchSize}, so the job catches up after bursts or downtime; ticks that
+ * fire while a previous drain is still running are skipped. Each job gets its own pool.
+ */
+public abstract class BatchDrainVerticle extends AbstractVerticle {
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final long intervalMs;
+    private final int batchSize;
+    private final String failureMessage;
+    private final String progressMessage;
+
+    private PgPool db;
+    private boolean running;
+
+    /**
+     * @param failureMessage logged with the cause when a drain fails
+     * @param progressMessage logged at debug with the drained count, e.g. {@code "Expired {} keys"}
+     */
+    protected BatchDrainVerticle(long intervalMs, int batchSize, String failureMessage, String progressMessage) {
+        this.intervalMs = intervalMs;
+        this.batchSize = batchSize;
+        this.failureMessage = failureMessage;
+        this.progressMessage = progressMessage;
+    }
+
+    /**
+     * Sets up the job's repositories on its pool, before the first tick.
+     */
+    protected abstract void init(PgPool db);
+
+    /**
+     * Works off one batch of at most {@code batchSize} backlog entries.
+     *
+     * @return how many entries the batch took; fewer than {@code batchSize} ends the drain
+     */
+    protected abstract Future<Integer> drainBatch(int batchSize);
+
+    /**
+     * Releases anything besides the pool when the verticle stops.
+     */
+    protected Future<Void> close() {
+        return Future.succeededFuture();
+    }
+
+    @Override
+    public void start() {
+        db = DatabaseConfig.createPool(vertx);
+        init(db);
+        vertx.setPeriodic(intervalMs, id -> tick());
+    }
+
+    private void tick() {
+        if (running) {
+            return;
+        }
+        running = true;
+        drain(0).onComplete(ar -> {
+            running = false;
+            if (ar.failed()) {
+                logger.error(failureMessage, ar.cause());
+            } else if (ar.result() > 0) {
+                logger.debug(progressMessage, ar.result());
+            }
+        });
+    }
+
+    private Future<Integer> drain(int drainedSoFar) {
+        return drainBatch(batchSize)
+            .compose(drained -> drained < batchSize
+                ? Future.succeededFuture(drainedSoFar + drained)
+                : drain(drainedSoFar + drained));
+    }
+
+    @Override
+    public void stop(Promise<Void> stopPromise) {
+        if (db == null) {
+            stopPromise.complete();
+            return;
+        }
+        db.close().compose(v -> close()).onComplete(stopPromise);
+    }
+}
@@ -0,0 +1,55 @@
+package com.salesmanagement;
+
+import com.salesmanagement.models.PageCursor;
+import com.salesmanagement.repositories.CustomerSyncRepository;
+import io.vertx.core.Future;
+import io.vertx.pgclient.PgPool;
+
+import java.util.List;
+
+/**
+ * Background copy of edited customer names and emails onto their orders. Customer updates only
+ * queue the customer, however often they are edited; each tick takes the queued customers in
+ * batches and rewrites their orders {@code CUSTOMER_SYNC_CHUNK_SIZE} at a time, each chunk its own
+ * short transaction, looping until the queue is empty.
+ */
+public class CustomerOrderSyncVerticle extends BatchDrainVerticle {
+    private static final long SYNC_INTERVAL_MS = Long.parseLong(System.getenv().getOrDefault("CUSTOMER_SYNC_INTERVAL_MS", "1000"));
+    private static final int BATCH_SIZE = Integer.parseInt(System.getenv().getOrDefault("CUSTOMER_SYNC_BATCH_SIZE", "100"));
+    private static final int CHUNK_SIZE = Integer.parseInt(System.getenv().getOrDefault("CUSTOMER_SYNC_CHUNK_SIZE", "500"));
+
+    private CustomerSyncRepository syncRepository;
+
+    public CustomerOrderSyncVerticle() {
+        super(SYNC_INTERVAL_MS, BATCH_SIZE, "Error syncing customer details to orders", "Synced details of {} customers");
+    }
+
+    @Override
+    protected void init(PgPool db) {
+        syncRepository = new CustomerSyncRepository(db);
+    }
+
+    @Override
+    protected Future<Integer> drainBatch(int batchSize) {
+        return syncRepository.queued(batchSize)
+            .compose(queued -> syncAll(queued, 0).map(v -> queued.size()));
+    }
+
+    // One customer at a time, so the job never holds more than one chunk's row locks
+    private Future<Void> syncAll(List<CustomerSyncRepository.Queued> queued, int index) {
+        if (index == queued.size()) {
+            return Future.succeededFuture();
+        }
+        CustomerSyncRepository.Queued customer = queued.get(index);
+        return syncChunks(customer.getCustomerId(), null)
+            .compose(v -> syncRepository.dequeue(customer))
+            .compose(v -> syncAll(queued, index + 1));
+    }
+
+    private Future<Void> syncChunks(Integer customerId, PageCursor after) {
+        return syncRepository.syncChunk(customerId, after, CHUNK_SIZE)
+            .compose(chunk -> chunk.getNext() == null
+                ? Future.succeededFuture()
+                : syncChunks(customerId, chunk.getNext()));
+    }
+}
@@ -0,0 +1,31 @@
+package com.salesmanagement;
+
+import com.salesmanagement.repositories.OrderRepository;
+import io.vertx.core.Future;
+import io.vertx.pgclient.PgPool;
+
+/**
+ * Background cleanup of order idempotency keys. Keys older than {@code IDEMPOTENCY_KEY_TTL_HOURS}
+ * are deleted in batches, so a big backlog never holds one long-running delete.
+ */
+public class IdempotencyKeyExpiryVerticle extends BatchDrainVerticle {
+    private static final int TTL_HOURS = Integer.parseInt(System.getenv().getOrDefault("IDEMPOTENCY_KEY_TTL_HOURS", "24"));
+    private static final long INTERVAL_MS = 10 * 60 * 1000;
+    private static final int BATCH_SIZE = 5000;
+
+    private OrderRepository orderRepository;
+
+    public IdempotencyKeyExpiryVerticle() {
+        super(INTERVAL_MS, BATCH_SIZE, "Error expiring idempotency keys", "Expired {} idempotency keys");
+    }
+
+    @Override
+    protected void init(PgPool db) {
+        orderRepository = new OrderRepository(db);
+    }
+
+    @Override
+    protected Future<Integer> drainBatch(int batchSize) {
+        return orderRepository.expireIdempotencyKeys(TTL_HOURS, batchSize);
+    }
+}
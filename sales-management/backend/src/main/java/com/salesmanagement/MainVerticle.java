@@ -1,48 +1,149 @@
 package com.salesmanagement;
 
+import com.salesmanagement.cache.ProductCache;
 import com.salesmanagement.config.DatabaseConfig;
+import com.salesmanagement.config.MigrationRunner;
+import com.salesmanagement.repositories.ReplicaSet;
+import com.salesmanagement.repositories.StatementWarmup;
 import com.salesmanagement.routes.AuthRoutes;
 import com.salesmanagement.routes.CustomerRoutes;
 import com.salesmanagement.routes.OrderRoutes;
 import com.salesmanagement.routes.ProductRoutes;
+import com.salesmanagement.routes.RateLimitHandler;
+import com.salesmanagement.routes.ReportRoutes;
+import com.salesmanagement.routes.StreamRoutes;
+import com.salesmanagement.utils.TokenService;
+import io.netty.handler.codec.compression.Brotli;
+import io.netty.handler.codec.compression.StandardCompressionOptions;
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
 import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerOptions;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.handler.BodyHandler;
 import io.vertx.ext.web.handler.CorsHandler;
+import io.vertx.ext.web.handler.JWTAuthHandler;
+import io.vertx.micrometer.PrometheusScrapingHandler;
 import io.vertx.pgclient.PgPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class MainVerticle extends AbstractVerticle {
     private static final Logger logger = LoggerFactory.getLogger(MainVerticle.class);
+    private static final long BULK_BODY_LIMIT = Long.parseLong(System.getenv().getOrDefault("BULK_BODY_LIMIT_MB", "100")) * 1024 * 1024;
+    private static final int COMPRESSION_LEVEL = Integer.parseInt(System.getenv().getOrDefault("HTTP_COMPRESSION_LEVEL", "6"));
+    private static final int COMPRESSION_MIN_BYTES = Integer.parseInt(System.getenv().getOrDefault("HTTP_COMPRESSION_MIN_BYTES", "1024"));
+    // Shared by every instance in the process; the first to start runs it
+    private static Future<Void> databaseReady;
     private PgPool db;
+    private List<PgPool> replicaPools = List.of();
 
     @Override
     public void start(Promise<Void> startPromise) {
         // Initialize database connection pool
         db = DatabaseConfig.createPool(vertx);
+        replicaPools = DatabaseConfig.createReplicaPools(vertx);
+
+        // Migrate and warm the pool before any instance starts serving
+        prepareDatabase(vertx, db, replicaPools)
+            .onComplete(ar -> context.runOnContext(v -> {
+                if (ar.succeeded()) {
+                    startServer(startPromise);
+                } else {
+                    startPromise.fail(ar.cause());
+                }
+            }));
+    }
+
+    private static synchronized Future<Void> prepareDatabase(Vertx vertx, PgPool db, List<PgPool> replicaPools) {
+        if (databaseReady == null) {
+            databaseReady = MigrationRunner.migrate(vertx, db)
+                .compose(v -> StatementWarmup.warm(db, DatabaseConfig.poolSize()))
+                .compose(v -> warmReplicas(replicaPools));
+        }
+        return databaseReady;
+    }
 
+    // A replica that is down or still replaying the migrations doesn't hold up startup; the health
+    // check keeps reads off it until it answers, and its connections open on first use instead
+    private static Future<Void> warmReplicas(List<PgPool> replicaPools) {
+        List<Future<Void>> warmed = new ArrayList<>(replicaPools.size());
+        for (int i = 0; i < replicaPools.size(); i++) {
+            String host = DatabaseConfig.replicaHosts().get(i);
+            warmed.add(StatementWarmup.warm(replicaPools.get(i), DatabaseConfig.replicaPoolSize())
+                .recover(err -> {
+                    logger.warn("Could not warm replica {}", host, err);
+                    return Future.succeededFuture();
+                }));
+        }
+        return Future.all(warmed).mapEmpty();
+    }
+
+    private void startServer(Promise<Void> startPromise) {
         // Create router
         Router router = Router.router(vertx);
 
         // CORS configuration for Angular frontend
         router.route().handler(CorsHandler.create()
             .addOrigin("http://localhost:4200")
-            .allowedMethods(io.vertx.core.http.HttpMethod.values())
+            .allowedMethods(java.util.Set.copyOf(io.vertx.core.http.HttpMethod.values()))
             .allowedHeaders(java.util.Set.of(
                 "Content-Type",
                 "Authorization",
                 "Accept",
                 "Origin",
-                "X-Requested-With"
+                "X-Requested-With",
+                "If-None-Match"
             ))
+            .exposedHeader("ETag")
             .allowCredentials(true));
 
+        // Per-IP limits run before bodies are read or tokens verified
+        router.route("/api/*").handler(RateLimitHandler.perIp());
+        router.route("/api/auth/*").handler(RateLimitHandler.auth());
+        RateLimitHandler.startEviction(vertx);
+
+        // Vert.x has no compression size threshold; marking small bodies as identity skips them
+        router.route().handler(ctx -> {
+            ctx.addHeadersEndHandler(v -> {
+                String length = ctx.response().headers().get(HttpHeaders.CONTENT_LENGTH);
+                if (length != null && Long.parseLong(length) < COMPRESSION_MIN_BYTES) {
+                    ctx.response().putHeader(HttpHeaders.CONTENT_ENCODING, HttpHeaders.IDENTITY);
+                }
+            });
+            ctx.next();
+        });
+
+        // Bulk imports get a larger body limit; the general handler below then skips them
+        router.postWithRegex("/api/[^/]+/bulk").handler(BodyHandler.create().setBodyLimit(BULK_BODY_LIMIT));
+
         // Body handler for parsing JSON
         router.route().handler(BodyHandler.create());
 
+        // Every /api route except signup/login requires a bearer token
+        JWTAuthHandler jwtAuthHandler = JWTAuthHandler.create(TokenService.getInstance().authProvider());
+        router.route("/api/*").handler(ctx -> {
+            if (ctx.normalizedPath().startsWith("/api/auth/")) {
+                ctx.next();
+                return;
+            }
+            // Browsers can't set headers on EventSource or WebSocket connections, so the stream
+            // also takes the token as ?access_token=
+            String queryToken = ctx.request().getParam("access_token");
+            if (queryToken != null && ctx.normalizedPath().equals("/api/stream")
+                    && ctx.request().getHeader(HttpHeaders.AUTHORIZATION) == null) {
+                ctx.request().headers().set(HttpHeaders.AUTHORIZATION, "Bearer " + queryToken);
+            }
+            jwtAuthHandler.handle(ctx);
+        });
+        router.route("/api/*").handler(RateLimitHandler.perUser());
+
         // Health check endpoint
         router.get("/health").handler(ctx -> {
             ctx.response()
@@ -50,15 +151,30 @@ public class MainVerticle extends AbstractVerticle {
                 .end(new JsonObject().put("status", "ok").encode());
         });
 
-        // Register routes
-        new AuthRoutes(router, db);
-        new ProductRoutes(router, db);
-        new CustomerRoutes(router, db);
-        new OrderRoutes(router, db);
+        // Prometheus scrape endpoint; per-route latency, pool and query timers
+        router.get("/metrics").handler(PrometheusScrapingHandler.create());
+
+        // Cache counters, aggregated over all verticle instances
+        router.get("/api/cache/stats").handler(ctx -> {
+            ctx.response()
+                .putHeader("Content-Type", "application/json")
+                .end(new JsonObject().put("products", ProductCache.stats().toJson()).encode());
+        });
+
+        // Register routes; logins and signups stay on the primary. Product and customer reads answer
+        // If-None-Match from this process's TableVersion counters, so this must be the only process
+        // writing to the database; a second one's writes would leave these ETags matching stale data
+        ReplicaSet replicas = new ReplicaSet(replicaPools);
+        new AuthRoutes(vertx, router, db);
+        new ProductRoutes(vertx, router, db, replicas);
+        new CustomerRoutes(router, db, replicas);
+        new OrderRoutes(vertx, router, db, replicas);
+        new ReportRoutes(router, db, replicas);
+        new StreamRoutes(vertx, router);
 
         // Start HTTP server
         int port = config().getInteger("http.port", 8080);
-        vertx.createHttpServer()
+        vertx.createHttpServer(serverOptions())
             .requestHandler(router)
             .listen(port)
             .onSuccess(server -> {
@@ -68,11 +184,34 @@ public class MainVerticle extends AbstractVerticle {
             .onFailure(startPromise::fail);
     }
 
+    /**
+     * gzip and deflate response compression, negotiated from Accept-Encoding. Brotli is offered
+     * too when brotli4j is on the classpath.
+     */
+    private static HttpServerOptions serverOptions() {
+        HttpServerOptions options = new HttpServerOptions()
+            .setCompressionSupported(true)
+            .setCompressionLevel(COMPRESSION_LEVEL);
+        if (Brotli.isAvailable()) {
+            options.addCompressor(StandardCompressionOptions.brotli());
+        }
+        return options
+            .addCompressor(StandardCompressionOptions.gzip(COMPRESSION_LEVEL, 15, 8))
+            .addCompressor(StandardCompressionOptions.deflate(COMPRESSION_LEVEL, 15, 8));
+    }
+
     @Override
     public void stop(Promise<Void> stopPromise) {
-        if (db != null) {
-            db.close();
+        if (db == null) {
+            stopPromise.complete();
+            return;
+        }
+        // Releases this instance's handles on the shared pools; the last instance out closes them
+        List<Future<Void>> closed = new ArrayList<>();
+        closed.add(db.close());
+        for (PgPool replicaPool : replicaPools) {
+            closed.add(replicaPool.close());
         }
-        stopPromise.complete();
+        Future.all(closed).<Void>mapEmpty().onComplete(stopPromise);
     }
 }
@@ -0,0 +1,62 @@
+package com.salesmanagement;
+
+import com.salesmanagement.repositories.OutboxRepository;
+import com.salesmanagement.utils.NdjsonFileSink;
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonObject;
+import io.vertx.pgclient.PgPool;
+
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Background relay for the change-event outbox. Each tick drains committed events in batches,
+ * appends them to the NDJSON file sink (rotated by size) and publishes each one on the event bus at
+ * {@link #ADDRESS}, looping until the backlog is gone. Events leave the outbox only after both.
+ */
+public class OutboxRelayVerticle extends BatchDrainVerticle {
+    public static final String ADDRESS = "outbox.events";
+
+    private static final long POLL_INTERVAL_MS = Long.parseLong(System.getenv().getOrDefault("OUTBOX_POLL_INTERVAL_MS", "200"));
+    private static final int BATCH_SIZE = Integer.parseInt(System.getenv().getOrDefault("OUTBOX_BATCH_SIZE", "1000"));
+    private static final String DIRECTORY = System.getenv().getOrDefault("OUTBOX_DIR", "outbox");
+    private static final long FILE_MAX_BYTES = Long.parseLong(System.getenv().getOrDefault("OUTBOX_FILE_MAX_MB", "64")) * 1024 * 1024;
+
+    private OutboxRepository outboxRepository;
+    private NdjsonFileSink sink;
+
+    public OutboxRelayVerticle() {
+        super(POLL_INTERVAL_MS, BATCH_SIZE, "Error relaying outbox events", "Relayed {} outbox events");
+    }
+
+    @Override
+    protected void init(PgPool db) {
+        outboxRepository = new OutboxRepository(db);
+        sink = new NdjsonFileSink(Paths.get(DIRECTORY), "events", FILE_MAX_BYTES);
+    }
+
+    @Override
+    protected Future<Integer> drainBatch(int batchSize) {
+        return outboxRepository.drain(batchSize, this::publish);
+    }
+
+    private Future<Void> publish(List<JsonObject> events) {
+        return vertx.<Void>executeBlocking(() -> {
+                sink.append(events);
+                return null;
+            })
+            .onSuccess(v -> {
+                for (JsonObject event : events) {
+                    vertx.eventBus().publish(ADDRESS, event);
+                }
+            });
+    }
+
+    @Override
+    protected Future<Void> close() {
+        return vertx.executeBlocking(() -> {
+            sink.close();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,51 @@
+package com.salesmanagement;
+
+import com.salesmanagement.config.DatabaseConfig;
+import com.salesmanagement.repositories.ReplicaSet;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.pgclient.PgPool;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Health-checks the read replicas every {@code DB_REPLICA_CHECK_INTERVAL_MS}. Repositories only
+ * route reads to replicas this has found reachable and caught up, so one running check per
+ * process is enough; it is deployed only when {@code DB_REPLICA_HOSTS} is set.
+ */
+public class ReplicaMonitorVerticle extends AbstractVerticle {
+    private List<PgPool> pools = List.of();
+    private boolean[] checking;
+
+    @Override
+    public void start() {
+        pools = DatabaseConfig.createReplicaPools(vertx);
+        checking = new boolean[pools.size()];
+        checkAll();
+        vertx.setPeriodic(ReplicaSet.CHECK_INTERVAL_MS, id -> checkAll());
+    }
+
+    private void checkAll() {
+        for (int i = 0; i < pools.size(); i++) {
+            // A replica that hangs holds its own check back without delaying the others
+            if (checking[i]) {
+                continue;
+            }
+            int replica = i;
+            checking[replica] = true;
+            ReplicaSet.check(replica, pools.get(replica))
+                .onComplete(ar -> checking[replica] = false);
+        }
+    }
+
+    @Override
+    public void stop(Promise<Void> stopPromise) {
+        List<Future<Void>> closed = new ArrayList<>();
+        for (PgPool pool : pools) {
+            closed.add(pool.close());
+        }
+        Future.all(closed).<Void>mapEmpty().onComplete(stopPromise);
+    }
+}
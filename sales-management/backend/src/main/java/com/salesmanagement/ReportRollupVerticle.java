@@ -0,0 +1,31 @@
+package com.salesmanagement;
+
+import com.salesmanagement.repositories.ReportRepository;
+import io.vertx.core.Future;
+import io.vertx.pgclient.PgPool;
+
+/**
+ * Background refresher for the sales rollups. Order writes only append deltas; this verticle
+ * periodically drains them in batches, looping until the backlog is gone so it catches up after
+ * bursts or downtime.
+ */
+public class ReportRollupVerticle extends BatchDrainVerticle {
+    private static final long REFRESH_INTERVAL_MS = Long.parseLong(System.getenv().getOrDefault("REPORTS_REFRESH_INTERVAL_MS", "1000"));
+    private static final int BATCH_SIZE = Integer.parseInt(System.getenv().getOrDefault("REPORTS_REFRESH_BATCH_SIZE", "5000"));
+
+    private ReportRepository reportRepository;
+
+    public ReportRollupVerticle() {
+        super(REFRESH_INTERVAL_MS, BATCH_SIZE, "Error refreshing sales rollups", "Applied {} sales rollup deltas");
+    }
+
+    @Override
+    protected void init(PgPool db) {
+        reportRepository = new ReportRepository(db);
+    }
+
+    @Override
+    protected Future<Integer> drainBatch(int batchSize) {
+        return reportRepository.applyDeltas(batchSize);
+    }
+}
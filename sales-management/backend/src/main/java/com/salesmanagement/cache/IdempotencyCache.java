@@ -0,0 +1,56 @@
+package com.salesmanagement.cache;
+
+import com.salesmanagement.models.IdempotencyKey;
+import com.salesmanagement.repositories.OrderRepository;
+import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+
+import java.util.function.Supplier;
+
+/**
+ * Idempotency keys recently seen by this instance, each with the request it came with and that
+ * request's response, pending while the first attempt still runs. A retry that lands here is
+ * answered from memory without a database round trip; one that reaches another instance, or
+ * comes after eviction, is resolved by {@code order_idempotency_keys}.
+ */
+public class IdempotencyCache {
+    private static final int MAX_ENTRIES = Integer.parseInt(System.getenv().getOrDefault("IDEMPOTENCY_CACHE_MAX_ENTRIES", "10000"));
+    private static final long TTL_MILLIS = Long.parseLong(System.getenv().getOrDefault("IDEMPOTENCY_CACHE_TTL_SECONDS", "600")) * 1000;
+    private static final CacheStats STATS = new CacheStats();
+
+    private final LruCache<String, Attempt> attempts = new LruCache<>(MAX_ENTRIES, TTL_MILLIS, STATS);
+
+    /**
+     * Returns the encoded response of the request already seen under {@code key}, or runs
+     * {@code attempt}.
+     * A key seen with a different request fails with {@link OrderRepository.DuplicateRequestException}.
+     * Failed attempts are forgotten, so the client's retry runs again.
+     */
+    public Future<Buffer> run(IdempotencyKey key, Supplier<Future<Buffer>> attempt) {
+        String id = key.getUserId() + ":" + key.getKey();
+        Attempt previous = attempts.get(id);
+        if (previous != null) {
+            return previous.requestHash.equals(key.getRequestHash())
+                ? previous.response
+                : Future.failedFuture(new OrderRepository.DuplicateRequestException(previous.requestHash, null));
+        }
+        Attempt current = new Attempt(key.getRequestHash(), attempt.get());
+        attempts.put(id, current);
+        current.response.onFailure(err -> {
+            if (attempts.get(id) == current) {
+                attempts.remove(id);
+            }
+        });
+        return current.response;
+    }
+
+    private static final class Attempt {
+        private final String requestHash;
+        private final Future<Buffer> response;
+
+        private Attempt(String requestHash, Future<Buffer> response) {
+            this.requestHash = requestHash;
+            this.response = response;
+        }
+    }
+}
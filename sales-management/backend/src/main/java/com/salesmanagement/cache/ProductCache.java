@@ -0,0 +1,106 @@
+package com.salesmanagement.cache;
+
+import com.salesmanagement.models.PageCursor;
+import com.salesmanagement.models.Product;
+import com.salesmanagement.models.ProductFilter;
+import com.salesmanagement.repositories.ProductRepository;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.buffer.impl.BufferImpl;
+import io.vertx.core.Vertx;
+
+/**
+ * Read-through cache in front of {@link ProductRepository}. Each verticle instance owns its own
+ * cache; writes are announced on the event bus so every instance drops its copies.
+ */
+public class ProductCache {
+    public static final String INVALIDATE_ADDRESS = "products.cache.invalidate";
+
+    private static final int MAX_ENTRIES = Integer.parseInt(System.getenv().getOrDefault("PRODUCT_CACHE_MAX_ENTRIES", "10000"));
+    private static final int MAX_PAGES = Integer.parseInt(System.getenv().getOrDefault("PRODUCT_CACHE_MAX_PAGES", "100"));
+    private static final long TTL_MILLIS = Long.parseLong(System.getenv().getOrDefault("PRODUCT_CACHE_TTL_SECONDS", "60")) * 1000;
+    private static final CacheStats STATS = new CacheStats();
+
+    private final Vertx vertx;
+    private final ProductRepository productRepository;
+    private final LruCache<Integer, Product> byId = new LruCache<>(MAX_ENTRIES, TTL_MILLIS, STATS);
+    private final LruCache<String, Buffer> pages = new LruCache<>(MAX_PAGES, TTL_MILLIS, STATS);
+    // Bumped on every invalidation so lookups that started before a write don't repopulate stale rows
+    private long generation;
+
+    public ProductCache(Vertx vertx, ProductRepository productRepository) {
+        this.vertx = vertx;
+        this.productRepository = productRepository;
+
+        vertx.eventBus().<Integer>consumer(INVALIDATE_ADDRESS, message -> evict(message.body()));
+    }
+
+    /**
+     * Counters aggregated over every instance in this process.
+     */
+    public static CacheStats stats() {
+        return STATS;
+    }
+
+    /**
+     * Tells every instance to drop {@code id}, for writers that change products without going
+     * through a {@code ProductCache} (e.g. stock decrements during order placement).
+     */
+    public static void publishInvalidation(Vertx vertx, Integer id) {
+        vertx.eventBus().publish(INVALIDATE_ADDRESS, id);
+    }
+
+    public Future<Product> findById(Integer id) {
+        Product cached = byId.get(id);
+        if (cached != null) {
+            return Future.succeededFuture(cached);
+        }
+        long startGeneration = generation;
+        return productRepository.findById(id)
+            .onSuccess(product -> {
+                if (product != null && generation == startGeneration) {
+                    byId.put(id, product);
+                }
+            });
+    }
+
+    /**
+     * Returns the encoded list response body for an unfiltered page. Pages are cached already serialized, so a
+     * hit costs no encoding at all; they live on the unpooled heap because many responses share them.
+     */
+    public Future<Buffer> findPage(PageCursor after, int limit) {
+        String key = (after != null ? after.getId() : 0) + ":" + limit;
+        Buffer cached = pages.get(key);
+        if (cached != null) {
+            return Future.succeededFuture(cached);
+        }
+        long startGeneration = generation;
+        ByteBuf out = Unpooled.buffer();
+        return productRepository.writePage(ProductFilter.NONE, after, limit, out)
+            .map(v -> BufferImpl.buffer(out))
+            .onSuccess(page -> {
+                if (generation == startGeneration) {
+                    pages.put(key, page);
+                }
+            });
+    }
+
+    /**
+     * Drops {@code id} here and on every other instance. Pages are cleared wholesale since any
+     * write may shift page contents. Pass {@code null} when the id is not known.
+     */
+    public void invalidate(Integer id) {
+        evict(id);
+        publishInvalidation(vertx, id);
+    }
+
+    private void evict(Integer id) {
+        generation++;
+        if (id != null) {
+            byId.remove(id);
+        }
+        pages.clear();
+    }
+}
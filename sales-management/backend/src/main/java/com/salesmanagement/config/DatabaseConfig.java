@@ -6,6 +6,9 @@ import io.vertx.pgclient.PgConnectOptions;
 import io.vertx.pgclient.PgPool;
 import io.vertx.sqlclient.PoolOptions;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class DatabaseConfig {
     private static final String DB_HOST = System.getenv().getOrDefault("DB_HOST", "localhost");
     private static final int DB_PORT = Integer.parseInt(System.getenv().getOrDefault("DB_PORT", "5432"));
@@ -13,18 +16,97 @@ public class DatabaseConfig {
     private static final String DB_USER = System.getenv().getOrDefault("DB_USER", "postgres");
     private static final String DB_PASSWORD = System.getenv().getOrDefault("DB_PASSWORD", "postgres");
     private static final int POOL_SIZE = Integer.parseInt(System.getenv().getOrDefault("DB_POOL_SIZE", "10"));
+    // Statements kept parsed per connection; 0 disables the cache
+    private static final int STATEMENT_CACHE_SIZE = Integer.parseInt(System.getenv().getOrDefault("DB_STATEMENT_CACHE_SIZE", "256"));
+    // Longer SQL isn't cached, which keeps rare one-off statements from evicting the hot ones
+    private static final int STATEMENT_CACHE_SQL_LIMIT = Integer.parseInt(System.getenv().getOrDefault("DB_STATEMENT_CACHE_SQL_LIMIT", "4096"));
+    // Commands written to a connection before the first reply comes back (batches, warm-up)
+    private static final int PIPELINING_LIMIT = Integer.parseInt(System.getenv().getOrDefault("DB_PIPELINING_LIMIT", "256"));
+    private static final String POOL_NAME = "sales-management-pool";
+    // Comma-separated host or host:port list of streaming replicas; reads are spread over them
+    private static final List<String> REPLICA_HOSTS = parseHosts(System.getenv().getOrDefault("DB_REPLICA_HOSTS", ""));
+    private static final int REPLICA_POOL_SIZE = Integer.parseInt(System.getenv().getOrDefault("DB_REPLICA_POOL_SIZE", String.valueOf(POOL_SIZE)));
+    // Short, so a dead replica is noticed by the health check instead of hanging reads
+    private static final int REPLICA_CONNECT_TIMEOUT_MS = 2000;
 
+    /**
+     * Returns the process-wide pool. Every verticle instance that calls this gets a handle to the
+     * same named pool, so {@code DB_POOL_SIZE} caps connections for the whole process rather than
+     * per instance. The pool closes once the last handle is closed.
+     */
     public static PgPool createPool(Vertx vertx) {
-        PgConnectOptions connectOptions = new PgConnectOptions()
+        return PgPool.pool(vertx, connectOptions(), poolOptions());
+    }
+
+    public static PgConnectOptions connectOptions() {
+        return new PgConnectOptions()
             .setHost(DB_HOST)
             .setPort(DB_PORT)
             .setDatabase(DB_NAME)
             .setUser(DB_USER)
-            .setPassword(DB_PASSWORD);
+            .setPassword(DB_PASSWORD)
+            .setCachePreparedStatements(STATEMENT_CACHE_SIZE > 0)
+            .setPreparedStatementCacheMaxSize(Math.max(STATEMENT_CACHE_SIZE, 1))
+            .setPreparedStatementCacheSqlLimit(STATEMENT_CACHE_SQL_LIMIT)
+            .setPipeliningLimit(PIPELINING_LIMIT);
+    }
+
+    public static PoolOptions poolOptions() {
+        return new PoolOptions()
+            .setMaxSize(POOL_SIZE)
+            .setShared(true)
+            .setName(POOL_NAME)
+            // Spread connections over several event loops instead of pinning them all to the first deployer's
+            .setEventLoopSize(Math.min(POOL_SIZE, Runtime.getRuntime().availableProcessors()));
+    }
+
+    public static int poolSize() {
+        return POOL_SIZE;
+    }
 
-        PoolOptions poolOptions = new PoolOptions()
-            .setMaxSize(POOL_SIZE);
+    public static int replicaPoolSize() {
+        return REPLICA_POOL_SIZE;
+    }
+
+    /**
+     * Connections across the primary and all replica pools.
+     */
+    public static int maxConnections() {
+        return POOL_SIZE + REPLICA_HOSTS.size() * REPLICA_POOL_SIZE;
+    }
+
+    public static List<String> replicaHosts() {
+        return REPLICA_HOSTS;
+    }
+
+    /**
+     * One process-wide pool per replica in {@code DB_REPLICA_HOSTS}, in the same order, shared the
+     * same way as the primary pool. Empty when no replicas are configured.
+     */
+    public static List<PgPool> createReplicaPools(Vertx vertx) {
+        List<PgPool> pools = new ArrayList<>(REPLICA_HOSTS.size());
+        for (int i = 0; i < REPLICA_HOSTS.size(); i++) {
+            String[] hostPort = REPLICA_HOSTS.get(i).split(":", 2);
+            PgConnectOptions connectOptions = connectOptions()
+                .setHost(hostPort[0])
+                .setPort(hostPort.length > 1 ? Integer.parseInt(hostPort[1]) : DB_PORT);
+            connectOptions.setConnectTimeout(REPLICA_CONNECT_TIMEOUT_MS);
+            PoolOptions poolOptions = poolOptions()
+                .setMaxSize(REPLICA_POOL_SIZE)
+                .setName(POOL_NAME + "-replica-" + i)
+                .setEventLoopSize(Math.min(REPLICA_POOL_SIZE, Runtime.getRuntime().availableProcessors()));
+            pools.add(PgPool.pool(vertx, connectOptions, poolOptions));
+        }
+        return pools;
+    }
 
-        return PgPool.pool(vertx, connectOptions, poolOptions);
+    private static List<String> parseHosts(String hosts) {
+        List<String> parsed = new ArrayList<>();
+        for (String host : hosts.split(",")) {
+            if (!host.isBlank()) {
+                parsed.add(host.trim());
+            }
+        }
+        return List.copyOf(parsed);
     }
 }
@@ -0,0 +1,39 @@
+package com.salesmanagement.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.vertx.core.VertxOptions;
+import io.vertx.micrometer.Label;
+import io.vertx.micrometer.MicrometerMetricsOptions;
+import io.vertx.micrometer.VertxPrometheusOptions;
+import io.vertx.micrometer.backends.BackendRegistries;
+
+import java.util.EnumSet;
+
+public class MetricsConfig {
+    private static final boolean METRICS_ENABLED = Boolean.parseBoolean(System.getenv().getOrDefault("METRICS_ENABLED", "true"));
+
+    /**
+     * Vert.x options with Micrometer metrics backed by a Prometheus registry. HTTP server metrics
+     * are labelled with the matched route template (e.g. {@code /api/orders/:id}) rather than the
+     * raw path, so every handler gets its own latency histogram without unbounded label values.
+     */
+    public static VertxOptions vertxOptions() {
+        return new VertxOptions().setMetricsOptions(new MicrometerMetricsOptions()
+            .setEnabled(METRICS_ENABLED)
+            .setJvmMetricsEnabled(true)
+            .setLabels(EnumSet.of(Label.HTTP_METHOD, Label.HTTP_CODE, Label.HTTP_ROUTE, Label.POOL_TYPE, Label.POOL_NAME))
+            .setPrometheusOptions(new VertxPrometheusOptions()
+                .setEnabled(true)
+                .setPublishQuantiles(true)));
+    }
+
+    /**
+     * Registry for application meters. Falls back to Micrometer's global registry, which discards
+     * measurements, when Vert.x was started without metrics (tests, benchmarks, the plain launcher).
+     */
+    public static MeterRegistry registry() {
+        MeterRegistry registry = BackendRegistries.getDefaultNow();
+        return registry != null ? registry : Metrics.globalRegistry;
+    }
+}
@@ -0,0 +1,179 @@
+package com.salesmanagement.config;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.SqlConnection;
+import io.vertx.sqlclient.Tuple;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Applies the numbered scripts in {@code db/migration} that the database hasn't seen yet, each in
+ * its own transaction, and records them with a checksum in {@code schema_history}. A session
+ * advisory lock serializes runners, so instances starting together apply each script once. A
+ * script edited after it was applied fails startup rather than leaving the schema silently behind.
+ */
+public class MigrationRunner {
+    private static final Logger logger = LoggerFactory.getLogger(MigrationRunner.class);
+    private static final String LOCATION = "db/migration";
+    private static final Pattern SCRIPT_NAME = Pattern.compile("(\\d+)_.+\\.sql");
+    private static final long LOCK_KEY = 0x73616c65736d6967L;
+    // Databases migrated by hand before the runner existed have tables but no history; this marks
+    // scripts up to the given version as applied without running them
+    private static final int BASELINE = Integer.parseInt(System.getenv().getOrDefault("DB_MIGRATION_BASELINE", "0"));
+
+    private MigrationRunner() {
+    }
+
+    public static Future<Void> migrate(Vertx vertx, PgPool pool) {
+        return vertx.executeBlocking(MigrationRunner::loadScripts, false)
+            .compose(scripts -> pool.withConnection(conn -> conn.preparedQuery("SELECT pg_advisory_lock($1)")
+                .execute(Tuple.of(LOCK_KEY))
+                .compose(locked -> apply(conn, scripts))
+                // The lock is held by the session, so it has to be released before the connection returns to the pool
+                .eventually(() -> conn.preparedQuery("SELECT pg_advisory_unlock($1)").execute(Tuple.of(LOCK_KEY)))));
+    }
+
+    private static Future<Void> apply(SqlConnection conn, List<Script> scripts) {
+        return conn.query("CREATE TABLE IF NOT EXISTS schema_history ("
+                + " version INTEGER PRIMARY KEY,"
+                + " script VARCHAR(255) NOT NULL,"
+                + " checksum CHAR(64) NOT NULL,"
+                + " applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,"
+                + " execution_ms INTEGER NOT NULL)")
+            .execute()
+            .compose(created -> conn.query("SELECT version, checksum FROM schema_history").execute())
+            .compose(rows -> {
+                Map<Integer, String> applied = new HashMap<>();
+                for (Row row : rows) {
+                    applied.put(row.getInteger("version"), row.getString("checksum"));
+                }
+                if (!applied.isEmpty() || BASELINE > 0) {
+                    return Future.succeededFuture(applied);
+                }
+                return conn.query("SELECT to_regclass('public.users') IS NOT NULL AS has_tables").execute()
+                    .compose(tables -> tables.iterator().next().getBoolean("has_tables")
+                        ? Future.failedFuture(new IllegalStateException("Database has tables but no schema_history; "
+                            + "set DB_MIGRATION_BASELINE to the last migration version applied by hand"))
+                        : Future.succeededFuture(applied));
+            })
+            .compose(applied -> {
+                boolean fresh = applied.isEmpty();
+                Future<Void> chain = Future.succeededFuture();
+                for (Script script : scripts) {
+                    String checksum = applied.remove(script.version);
+                    if (checksum != null) {
+                        if (!checksum.equals(script.checksum)) {
+                            return Future.failedFuture(new IllegalStateException("Migration " + script.name
+                                + " has changed since it was applied (recorded checksum " + checksum + ", now " + script.checksum + ")"));
+                        }
+                    } else if (fresh && script.version <= BASELINE) {
+                        chain = chain.compose(v -> record(conn, script, 0));
+                    } else {
+                        chain = chain.compose(v -> run(conn, script));
+                    }
+                }
+                if (!applied.isEmpty()) {
+                    // Expected mid-deploy, while instances of the previous release are still starting
+                    logger.warn("Database has migrations this build doesn't know about: {}", applied.keySet());
+                }
+                return chain;
+            });
+    }
+
+    private static Future<Void> run(SqlConnection conn, Script script) {
+        long start = System.nanoTime();
+        return conn.begin().compose(tx -> conn.query(script.sql).execute()
+            .compose(done -> record(conn, script, (System.nanoTime() - start) / 1_000_000))
+            .compose(v -> tx.commit())
+            .recover(err -> tx.rollback().transform(ar -> Future.<Void>failedFuture(
+                new IllegalStateException("Migration " + script.name + " failed", err)))))
+            .onSuccess(v -> logger.info("Applied migration {} in {} ms", script.name, (System.nanoTime() - start) / 1_000_000));
+    }
+
+    private static Future<Void> record(SqlConnection conn, Script script, long executionMs) {
+        return conn.preparedQuery("INSERT INTO schema_history (version, script, checksum, execution_ms) VALUES ($1, $2, $3, $4)")
+            .execute(Tuple.of(script.version, script.name, script.checksum, (int) executionMs))
+            .mapEmpty();
+    }
+
+    private static List<Script> loadScripts() throws IOException, URISyntaxException {
+        URL location = MigrationRunner.class.getClassLoader().getResource(LOCATION);
+        if (location == null) {
+            throw new IllegalStateException("No migrations found on the classpath at " + LOCATION);
+        }
+        URI uri = location.toURI();
+        // Inside the fat JAR the directory has to be listed through a zip file system
+        if ("jar".equals(uri.getScheme())) {
+            try (FileSystem jar = FileSystems.newFileSystem(uri, Map.of())) {
+                return readScripts(jar.getPath(LOCATION));
+            }
+        }
+        return readScripts(Paths.get(uri));
+    }
+
+    private static List<Script> readScripts(Path directory) throws IOException {
+        List<Script> scripts = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                Matcher matcher = SCRIPT_NAME.matcher(name);
+                if (matcher.matches()) {
+                    scripts.add(new Script(Integer.parseInt(matcher.group(1)), name, Files.readString(file, StandardCharsets.UTF_8)));
+                }
+            }
+        }
+        scripts.sort((a, b) -> Integer.compare(a.version, b.version));
+        for (int i = 1; i < scripts.size(); i++) {
+            if (scripts.get(i).version == scripts.get(i - 1).version) {
+                throw new IllegalStateException("Duplicate migration version: " + scripts.get(i - 1).name + ", " + scripts.get(i).name);
+            }
+        }
+        return scripts;
+    }
+
+    private static final class Script {
+        final int version;
+        final String name;
+        final String sql;
+        final String checksum;
+
+        Script(int version, String name, String sql) {
+            this.version = version;
+            this.name = name;
+            this.sql = sql;
+            this.checksum = sha256(sql);
+        }
+
+        private static String sha256(String sql) {
+            try {
+                return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(sql.getBytes(StandardCharsets.UTF_8)));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.salesmanagement.models;
+
+/**
+ * Optional search criteria for customer lists; null fields don't filter.
+ */
+public class CustomerFilter {
+    private final String query;
+    private final String queryPrefix;
+    private final String company;
+    private final String companyPrefix;
+
+    public CustomerFilter(String query, String queryPrefix, String company, String companyPrefix) {
+        this.query = query;
+        this.queryPrefix = queryPrefix;
+        this.company = company;
+        this.companyPrefix = companyPrefix;
+    }
+
+    /**
+     * Builds a filter from the {@code q}, {@code qPrefix}, {@code company} and
+     * {@code companyPrefix} query parameters.
+     */
+    public static CustomerFilter parse(String q, String qPrefix, String company, String companyPrefix) {
+        return new CustomerFilter(Filters.substring("q", q, "qPrefix"), Filters.trimToNull(qPrefix),
+            Filters.substring("company", company, "companyPrefix"), Filters.trimToNull(companyPrefix));
+    }
+
+    public boolean isEmpty() {
+        return query == null && queryPrefix == null && company == null && companyPrefix == null;
+    }
+
+    // Getters
+    public String getQuery() {
+        return query;
+    }
+
+    public String getQueryPrefix() {
+        return queryPrefix;
+    }
+
+    public String getCompany() {
+        return company;
+    }
+
+    public String getCompanyPrefix() {
+        return companyPrefix;
+    }
+}
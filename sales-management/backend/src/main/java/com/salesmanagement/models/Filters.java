@@ -0,0 +1,58 @@
+package com.salesmanagement.models;
+
+/**
+ * Query parameter parsing shared by the list filters.
+ */
+final class Filters {
+    static final int MAX_QUERY_LENGTH = 200;
+    // Substring searches use pg_trgm indexes, which need at least one whole trigram from the term
+    static final int MIN_SUBSTRING_LENGTH = 3;
+
+    private Filters() {
+    }
+
+    static String trimToNull(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String trimmed = value.trim();
+        if (trimmed.length() > MAX_QUERY_LENGTH) {
+            throw new IllegalArgumentException("Search terms must be at most " + MAX_QUERY_LENGTH + " characters");
+        }
+        return trimmed;
+    }
+
+    /**
+     * Like {@link #trimToNull}, for a term matched anywhere in the value. Shorter terms would scan
+     * the whole table, so they are refused in favour of the {@code prefixName} parameter.
+     */
+    static String substring(String name, String value, String prefixName) {
+        String term = trimToNull(value);
+        if (term != null && term.length() < MIN_SUBSTRING_LENGTH) {
+            throw new IllegalArgumentException(name + " must be at least " + MIN_SUBSTRING_LENGTH
+                + " characters; use " + prefixName + " to match the start of the value");
+        }
+        return term;
+    }
+
+    static Double parseDouble(String name, String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a number");
+        }
+    }
+
+    static Boolean parseBoolean(String name, String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        if (!"true".equals(value) && !"false".equals(value)) {
+            throw new IllegalArgumentException(name + " must be true or false");
+        }
+        return Boolean.valueOf(value);
+    }
+}
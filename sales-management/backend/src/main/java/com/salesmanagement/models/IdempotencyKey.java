@@ -0,0 +1,29 @@
+package com.salesmanagement.models;
+
+/**
+ * A client's {@code Idempotency-Key} header, scoped to the user who sent it, with a hash of the
+ * request body it came with.
+ */
+public class IdempotencyKey {
+    private final Integer userId;
+    private final String key;
+    private final String requestHash;
+
+    public IdempotencyKey(Integer userId, String key, String requestHash) {
+        this.userId = userId;
+        this.key = key;
+        this.requestHash = requestHash;
+    }
+
+    public Integer getUserId() {
+        return userId;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getRequestHash() {
+        return requestHash;
+    }
+}
@@ -0,0 +1,68 @@
+package com.salesmanagement.models;
+
+/**
+ * Optional search criteria for product lists; null fields don't filter.
+ */
+public class ProductFilter {
+    public static final ProductFilter NONE = new ProductFilter(null, null, null, null, null, null);
+
+    private final String query;
+    private final String queryPrefix;
+    private final String category;
+    private final Double minPrice;
+    private final Double maxPrice;
+    private final Boolean inStock;
+
+    public ProductFilter(String query, String queryPrefix, String category, Double minPrice, Double maxPrice, Boolean inStock) {
+        this.query = query;
+        this.queryPrefix = queryPrefix;
+        this.category = category;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+        this.inStock = inStock;
+    }
+
+    /**
+     * Builds a filter from the {@code q}, {@code qPrefix}, {@code category}, {@code minPrice},
+     * {@code maxPrice} and {@code inStock} query parameters. Throws
+     * {@link IllegalArgumentException} for values that don't parse.
+     */
+    public static ProductFilter parse(String q, String qPrefix, String category, String minPrice, String maxPrice, String inStock) {
+        Double min = Filters.parseDouble("minPrice", minPrice);
+        Double max = Filters.parseDouble("maxPrice", maxPrice);
+        if (min != null && max != null && min > max) {
+            throw new IllegalArgumentException("minPrice must not be greater than maxPrice");
+        }
+        return new ProductFilter(Filters.substring("q", q, "qPrefix"), Filters.trimToNull(qPrefix), Filters.trimToNull(category), min, max,
+            Filters.parseBoolean("inStock", inStock));
+    }
+
+    public boolean isEmpty() {
+        return query == null && queryPrefix == null && category == null && minPrice == null && maxPrice == null && inStock == null;
+    }
+
+    // Getters
+    public String getQuery() {
+        return query;
+    }
+
+    public String getQueryPrefix() {
+        return queryPrefix;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public Double getMinPrice() {
+        return minPrice;
+    }
+
+    public Double getMaxPrice() {
+        return maxPrice;
+    }
+
+    public Boolean getInStock() {
+        return inStock;
+    }
+}
@@ -0,0 +1,239 @@
+package com.salesmanagement.repositories;
+
+import com.salesmanagement.config.DatabaseConfig;
+import com.salesmanagement.config.MetricsConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.pgclient.PgException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Caps how many repository calls run against Postgres at once, for the whole process, and adapts
+ * the cap to query latency (AIMD). Latency is averaged over short windows and compared with the
+ * lowest average seen, the no-load latency: a window more than {@code DB_LIMIT_LATENCY_TOLERANCE}
+ * times slower, or with connection failures, cuts the limit by 10%; a window in which calls had to
+ * queue raises it by one, up to the total connections of the primary and replica pools.
+ *
+ * <p>Calls over the limit wait in a queue per {@link Priority}, and a freed slot goes to the
+ * highest priority waiting. Once the calls a new one would wait behind exceed its budget of
+ * {@code DB_LIMIT_QUEUE_FACTOR} times the limit (half that for {@link Priority#LOW}), it fails
+ * at once with {@link OverloadedException} rather than adding to the pile-up.
+ */
+public final class ConcurrencyLimiter {
+    private static final int MIN_LIMIT = Integer.parseInt(System.getenv().getOrDefault("DB_LIMIT_MIN", "2"));
+    private static final int MAX_LIMIT = Integer.parseInt(System.getenv().getOrDefault("DB_LIMIT_MAX",
+        String.valueOf(DatabaseConfig.maxConnections())));
+    private static final double QUEUE_FACTOR = Double.parseDouble(System.getenv().getOrDefault("DB_LIMIT_QUEUE_FACTOR", "4"));
+    private static final double TOLERANCE = Double.parseDouble(System.getenv().getOrDefault("DB_LIMIT_LATENCY_TOLERANCE", "2"));
+    private static final long WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int WINDOW_MIN_SAMPLES = 10;
+    private static final double BACKOFF = 0.9;
+    // Lets the no-load latency creep up (~2%/s), so a lasting slowdown such as a grown table is adopted
+    private static final double BASELINE_DRIFT = 1.002;
+
+    static final ConcurrencyLimiter DATABASE = new ConcurrencyLimiter(MIN_LIMIT, MAX_LIMIT, QUEUE_FACTOR, TOLERANCE, System::nanoTime);
+
+    enum Priority {
+        HIGH, NORMAL, LOW
+    }
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double queueFactor;
+    private final double tolerance;
+    private final LongSupplier clock;
+    private final Map<Priority, ArrayDeque<Runnable>> waiters = new EnumMap<>(Priority.class);
+    private final Map<Priority, Counter> rejected = new EnumMap<>(Priority.class);
+    private double limit;
+    private int inFlight;
+    private int queued;
+
+    private long windowStart;
+    private long windowLatencyNanos;
+    private int windowSamples;
+    private boolean windowFailed;
+    private boolean windowSaturated;
+    private double baselineNanos = Double.MAX_VALUE;
+
+    /**
+     * {@link #DATABASE} takes its settings from the environment; tests pass their own and a fake
+     * clock. Meters are registered once per name, so only the first instance is reported.
+     */
+    ConcurrencyLimiter(int minLimit, int maxLimit, double queueFactor, double tolerance, LongSupplier clock) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.queueFactor = queueFactor;
+        this.tolerance = tolerance;
+        this.clock = clock;
+        this.limit = maxLimit;
+        this.windowStart = clock.getAsLong();
+        MeterRegistry registry = MetricsConfig.registry();
+        for (Priority priority : Priority.values()) {
+            waiters.put(priority, new ArrayDeque<>());
+            rejected.put(priority, Counter.builder("db.concurrency.rejected")
+                .description("Repository calls failed fast because the database queue was over budget")
+                .tag("priority", priority.name().toLowerCase())
+                .register(registry));
+        }
+        Gauge.builder("db.concurrency.limit", this, ConcurrencyLimiter::currentLimit)
+            .description("Repository calls currently allowed to run against the database at once")
+            .register(registry);
+        Gauge.builder("db.concurrency.in.flight", this, ConcurrencyLimiter::inFlight)
+            .description("Repository calls currently running against the database")
+            .register(registry);
+        Gauge.builder("db.concurrency.queued", this, ConcurrencyLimiter::queued)
+            .description("Repository calls waiting for the concurrency limit")
+            .register(registry);
+    }
+
+    /**
+     * Runs {@code operation} once a slot is free, on the caller's context. Only {@code sampled}
+     * operations, single statements, feed the latency average; streams and transactions take as
+     * long as their callers make them.
+     */
+    <T> Future<T> run(Priority priority, boolean sampled, Supplier<Future<T>> operation) {
+        Context context = Vertx.currentContext();
+        Promise<T> promise;
+        synchronized (this) {
+            if (queued == 0 && inFlight < (int) limit) {
+                inFlight++;
+                promise = null;
+            } else if (waitingAhead(priority) >= budget(priority)) {
+                rejected.get(priority).increment();
+                return Future.failedFuture(new OverloadedException());
+            } else {
+                Promise<T> waiting = Promise.promise();
+                Runnable start = () -> start(sampled, operation).onComplete(waiting);
+                waiters.get(priority).add(context == null ? start : () -> context.runOnContext(v -> start.run()));
+                queued++;
+                windowSaturated = true;
+                promise = waiting;
+            }
+        }
+        return promise != null ? promise.future() : start(sampled, operation);
+    }
+
+    private <T> Future<T> start(boolean sampled, Supplier<Future<T>> operation) {
+        long started = clock.getAsLong();
+        Future<T> result;
+        try {
+            result = operation.get();
+        } catch (RuntimeException e) {
+            result = Future.failedFuture(e);
+        }
+        return result.onComplete(ar -> {
+            if (!sampled) {
+                release(-1, false);
+            } else if (ar.succeeded()) {
+                release(clock.getAsLong() - started, false);
+            } else {
+                // SQL errors say nothing about load; timeouts and dropped connections do
+                release(-1, !(ar.cause() instanceof PgException));
+            }
+        });
+    }
+
+    private void release(long latencyNanos, boolean failed) {
+        List<Runnable> ready = null;
+        synchronized (this) {
+            inFlight--;
+            sample(latencyNanos, failed);
+            while (queued > 0 && inFlight < (int) limit) {
+                if (ready == null) {
+                    ready = new ArrayList<>(1);
+                }
+                ready.add(nextWaiter());
+                queued--;
+                inFlight++;
+            }
+        }
+        if (ready != null) {
+            ready.forEach(Runnable::run);
+        }
+    }
+
+    private void sample(long latencyNanos, boolean failed) {
+        if (latencyNanos >= 0) {
+            windowLatencyNanos += latencyNanos;
+            windowSamples++;
+        }
+        windowFailed |= failed;
+        long now = clock.getAsLong();
+        if (now - windowStart < WINDOW_NANOS || (windowSamples < WINDOW_MIN_SAMPLES && !windowFailed)) {
+            return;
+        }
+        boolean congested = windowFailed;
+        if (windowSamples > 0) {
+            double average = (double) windowLatencyNanos / windowSamples;
+            baselineNanos = Math.min(average, baselineNanos * BASELINE_DRIFT);
+            congested |= average > baselineNanos * tolerance;
+        }
+        if (congested) {
+            limit = Math.max(minLimit, limit * BACKOFF);
+        } else if (windowSaturated) {
+            limit = Math.min(maxLimit, limit + 1);
+        }
+        windowStart = now;
+        windowLatencyNanos = 0;
+        windowSamples = 0;
+        windowFailed = false;
+        windowSaturated = queued > 0;
+    }
+
+    private Runnable nextWaiter() {
+        for (ArrayDeque<Runnable> queue : waiters.values()) {
+            Runnable next = queue.poll();
+            if (next != null) {
+                return next;
+            }
+        }
+        throw new IllegalStateException("No waiter queued");
+    }
+
+    // A call waits behind everything queued at its own priority or higher
+    private int waitingAhead(Priority priority) {
+        int ahead = 0;
+        for (Map.Entry<Priority, ArrayDeque<Runnable>> entry : waiters.entrySet()) {
+            if (entry.getKey().compareTo(priority) <= 0) {
+                ahead += entry.getValue().size();
+            }
+        }
+        return ahead;
+    }
+
+    private double budget(Priority priority) {
+        double budget = (int) limit * queueFactor;
+        return priority == Priority.LOW ? budget / 2 : budget;
+    }
+
+    synchronized double currentLimit() {
+        return (int) limit;
+    }
+
+    private synchronized double inFlight() {
+        return inFlight;
+    }
+
+    private synchronized double queued() {
+        return queued;
+    }
+
+    public static class OverloadedException extends RuntimeException {
+        public OverloadedException() {
+            super("Database is overloaded, try again shortly", null, false, false);
+        }
+    }
+}
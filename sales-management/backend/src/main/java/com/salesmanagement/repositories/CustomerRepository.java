@@ -1,73 +1,269 @@
 package com.salesmanagement.repositories;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.salesmanagement.models.Customer;
+import com.salesmanagement.models.CustomerFilter;
+import com.salesmanagement.models.PageCursor;
+import io.netty.buffer.ByteBuf;
 import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.WriteStream;
 import io.vertx.pgclient.PgPool;
 import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
 import io.vertx.sqlclient.Tuple;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 public class CustomerRepository {
-    private final PgPool db;
+    private static final String COLUMNS = "id, name, email, phone, company, created_at";
+    private static final String SELECT_COLUMNS = "SELECT " + COLUMNS + " FROM customers";
+    private static final Query FIND_BY_ID = new Query("findById", SELECT_COLUMNS + " WHERE id = $1");
+    // Every write records its change event in the outbox as part of the same statement
+    private static final Query INSERT = new Query("create", OutboxRepository.recording(OutboxRepository.CUSTOMER, "created",
+        "INSERT INTO customers (name, email, phone, company, created_at) VALUES ($1, $2, $3, $4, $5)", COLUMNS));
+    private static final Query INSERT_BATCH = new Query("createBatch", OutboxRepository.recording(OutboxRepository.CUSTOMER, "created",
+        "INSERT INTO customers (name, email, phone, company, created_at) VALUES ($1, $2, $3, $4, $5)"));
+    private static final Query INSERT_UNNEST = new Query("createUnnest", OutboxRepository.recording(OutboxRepository.CUSTOMER, "created",
+        "INSERT INTO customers (name, email, phone, company, created_at) "
+            + "SELECT n, e, p, c, $5 FROM unnest($1::text[], $2::text[], $3::text[], $4::text[]) AS t(n, e, p, c)"));
+    // Orders keep a copy of name and email, so a change to either queues the customer for
+    // CustomerSyncRepository; a repeat edit before the sync runs only takes a new generation. The
+    // row is locked first, so the comparison sees the latest committed values even under concurrent edits.
+    private static final Query UPDATE = new Query("update", OutboxRepository.recording(OutboxRepository.CUSTOMER, "updated",
+        "previous AS (SELECT id, name, email FROM customers WHERE id = $5 FOR UPDATE)",
+        "UPDATE customers SET name = $1, email = $2, phone = $3, company = $4 WHERE id = (SELECT id FROM previous)", COLUMNS,
+        "INSERT INTO customer_order_sync (customer_id) SELECT changed.id FROM changed JOIN previous ON previous.id = changed.id"
+            + " WHERE (changed.name, changed.email) IS DISTINCT FROM (previous.name, previous.email)"
+            + " ON CONFLICT (customer_id) DO UPDATE SET generation = nextval('customer_order_sync_generation'),"
+            + " queued_at = CURRENT_TIMESTAMP"));
+    private static final Query DELETE = new Query("delete", OutboxRepository.recording(OutboxRepository.CUSTOMER, "deleted",
+        "DELETE FROM customers WHERE id = $1"));
+    private static final Query SUMMARY_FIRST_PAGE = new Query("writeSummary", selectSummary(null, "$2"));
+    private static final Query SUMMARY_NEXT_PAGE = new Query("writeSummary", selectSummary("($2, $3)", "$4"));
+
+    // The first two are what writePage builds for unfiltered pages
+    static final List<Query> QUERIES = List.of(
+        new Query("writePage", SELECT_COLUMNS + " ORDER BY created_at DESC, id DESC LIMIT $1"),
+        new Query("writePage", SELECT_COLUMNS + " WHERE (created_at, id) < ($1, $2) ORDER BY created_at DESC, id DESC LIMIT $3"),
+        FIND_BY_ID, INSERT, INSERT_BATCH, INSERT_UNNEST, UPDATE, DELETE, SUMMARY_FIRST_PAGE, SUMMARY_NEXT_PAGE);
+
+    private final MeteredPool db;
+    private final SingleFlight<Integer, Customer> byId;
 
     public CustomerRepository(PgPool db) {
-        this.db = db;
+        this(db, ReplicaSet.NONE);
+    }
+
+    public CustomerRepository(PgPool db, ReplicaSet replicas) {
+        this.db = new MeteredPool(db, replicas, "CustomerRepository");
+        this.byId = new SingleFlight<>("CustomerRepository", "findById", TableVersion.CUSTOMERS);
     }
 
-    public Future<List<Customer>> findAll() {
-        return db.query("SELECT id, name, email, phone, company, created_at FROM customers ORDER BY created_at DESC")
-            .execute()
+    /**
+     * Writes one keyset page of customers matching {@code filter} as the list response body
+     * ({@code {"items":[...],"nextCursor":...}}) into {@code out}, encoding straight from the rows.
+     */
+    public Future<Void> writePage(CustomerFilter filter, PageCursor after, int limit, ByteBuf out) {
+        Where where = filtered(filter);
+        if (after != null) {
+            where.and("(created_at, id) < (" + where.bind(after.getCreatedAt()) + ", " + where.bind(after.getId()) + ")");
+        }
+        String sql = SELECT_COLUMNS + where.sql() + " ORDER BY created_at DESC, id DESC LIMIT " + where.bind(limit + 1);
+        return db.read(new Query("writePage", sql, ConcurrencyLimiter.Priority.LOW, where.cacheable()), where.params(), TableVersion.CUSTOMERS)
             .map(rows -> {
-                List<Customer> customers = new ArrayList<>();
-                for (Row row : rows) {
-                    customers.add(mapRow(row));
-                }
-                return customers;
+                JsonRows.writePage(out, rows, limit, CustomerRepository::writeJson,
+                    last -> new PageCursor(last.getLocalDateTime("created_at"), last.getInteger("id")).encode());
+                return null;
             });
     }
 
+    public Future<Void> streamAll(CustomerFilter filter, WriteStream<Buffer> out) {
+        Where where = filtered(filter);
+        return RowStreams.writeJsonArray(db, "streamAll", TableVersion.CUSTOMERS, SELECT_COLUMNS + where.sql() + " ORDER BY created_at DESC, id DESC",
+            where.params(), CustomerRepository::writeJson, out);
+    }
+
+    // All case-insensitive, anywhere in the value or at its start, see Where
+    private static Where filtered(CustomerFilter filter) {
+        Where where = new Where();
+        if (filter.getQuery() != null) {
+            where.and(where.contains("name", filter.getQuery()));
+        }
+        if (filter.getQueryPrefix() != null) {
+            where.and(where.startsWith("name", filter.getQueryPrefix()));
+        }
+        if (filter.getCompany() != null) {
+            where.and(where.contains("company", filter.getCompany()));
+        }
+        if (filter.getCompanyPrefix() != null) {
+            where.and(where.startsWith("company", filter.getCompanyPrefix()));
+        }
+        return where;
+    }
+
     public Future<Customer> findById(Integer id) {
-        return db.preparedQuery("SELECT id, name, email, phone, company, created_at FROM customers WHERE id = $1")
-            .execute(Tuple.of(id))
+        return byId.run(id, () -> db.read(FIND_BY_ID, Tuple.of(id), TableVersion.CUSTOMERS)
             .map(rows -> {
                 if (rows.iterator().hasNext()) {
                     return mapRow(rows.iterator().next());
                 }
                 return null;
-            });
+            }));
+    }
+
+    /**
+     * The customer ({@code $1}) with their lifetime order count and revenue and one page of their
+     * orders, in one statement: a row per order on the page (plus one to detect the next page),
+     * each repeating the customer and totals, or a single row without order columns if there are
+     * none. Customer columns are prefixed {@code c_} since orders have an {@code id} and
+     * {@code created_at} of their own.
+     */
+    private static String selectSummary(String after, String limit) {
+        return "SELECT c.id AS c_id, c.name AS c_name, c.email AS c_email, c.phone AS c_phone, c.company AS c_company,"
+            + " c.created_at AS c_created_at, totals.order_count, totals.revenue, recent.*"
+            + " FROM customers c"
+            + " CROSS JOIN LATERAL (" + OrderRepository.selectCustomerTotals("c.id") + ") totals"
+            + " LEFT JOIN LATERAL (" + OrderRepository.selectCustomerOrders("c.id", after, limit) + ") recent ON true"
+            + " WHERE c.id = $1"
+            + " ORDER BY recent.created_at DESC, recent.id DESC";
+    }
+
+    /**
+     * Writes {@code {"customer":{...},"orderCount":...,"revenue":...,"orders":{"items":[...],"nextCursor":...}}}
+     * into {@code out}, where {@code orders} is a keyset page of the customer's orders like
+     * {@code GET /api/orders} returns. Resolves to false, writing nothing, if there is no such customer.
+     */
+    public Future<Boolean> writeSummary(Integer id, PageCursor after, int limit, ByteBuf out) {
+        Future<RowSet<Row>> query;
+        // Replicas are skipped while either table has a recent write from this process
+        TableVersion table = TableVersion.latest(TableVersion.CUSTOMERS, TableVersion.ORDERS);
+        if (after == null) {
+            query = db.read(SUMMARY_FIRST_PAGE, Tuple.of(id, limit + 1), table);
+        } else {
+            query = db.read(SUMMARY_NEXT_PAGE, Tuple.of(id, after.getCreatedAt(), after.getId(), limit + 1), table);
+        }
+        return query.map(rows -> {
+            if (rows.size() == 0) {
+                return false;
+            }
+            JsonRows.writeRows(out, rows, (summary, json) -> writeSummaryJson(summary, limit, json));
+            return true;
+        });
+    }
+
+    private static void writeSummaryJson(Iterable<Row> rows, int limit, JsonGenerator json) throws IOException {
+        Row first = rows.iterator().next();
+        List<Row> orders = new ArrayList<>(limit + 1);
+        for (Row row : rows) {
+            if (row.getInteger("id") != null) {
+                orders.add(row);
+            }
+        }
+        json.writeStartObject();
+        json.writeFieldName("customer");
+        writeJson(json, first.getInteger("c_id"), first.getString("c_name"), first.getString("c_email"), first.getString("c_phone"),
+            first.getLocalDateTime("c_created_at"), first.getString("c_company"));
+        json.writeNumberField("orderCount", first.getLong("order_count"));
+        JsonRows.writeDoubleField(json, "revenue", first.getDouble("revenue"));
+        json.writeFieldName("orders");
+        JsonRows.writePage(json, orders, limit, OrderRepository::writeJson, OrderRepository::cursorOf);
+        json.writeEndObject();
     }
 
     public Future<Customer> create(Customer customer) {
-        return db.preparedQuery(
-            "INSERT INTO customers (name, email, phone, company, created_at) VALUES ($1, $2, $3, $4, $5) RETURNING id, name, email, phone, company, created_at")
-            .execute(Tuple.of(customer.getName(), customer.getEmail(), customer.getPhone(), 
+        return db.execute(INSERT, Tuple.of(customer.getName(), customer.getEmail(), customer.getPhone(), 
                 customer.getCompany(), LocalDateTime.now()))
-            .map(rows -> mapRow(rows.iterator().next()));
+            .map(rows -> mapRow(rows.iterator().next()))
+            .onComplete(ar -> TableVersion.CUSTOMERS.bump());
+    }
+
+    /**
+     * Inserts all rows with one pipelined {@code executeBatch}; fails as a whole if any row fails.
+     */
+    public Future<Void> createBatch(List<Customer> customers) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Tuple> batch = new ArrayList<>(customers.size());
+        for (Customer customer : customers) {
+            batch.add(Tuple.of(customer.getName(), customer.getEmail(), customer.getPhone(),
+                customer.getCompany(), now));
+        }
+        return db.executeBatch(INSERT_BATCH, batch)
+            .onComplete(ar -> TableVersion.CUSTOMERS.bump())
+            .mapEmpty();
+    }
+
+    /**
+     * Inserts all rows with a single statement over column arrays, for large imports.
+     * Fails as a whole if any row fails.
+     */
+    public Future<Void> createUnnest(List<Customer> customers) {
+        int size = customers.size();
+        String[] names = new String[size];
+        String[] emails = new String[size];
+        String[] phones = new String[size];
+        String[] companies = new String[size];
+        for (int i = 0; i < size; i++) {
+            Customer customer = customers.get(i);
+            names[i] = customer.getName();
+            emails[i] = customer.getEmail();
+            phones[i] = customer.getPhone();
+            companies[i] = customer.getCompany();
+        }
+        return db.execute(INSERT_UNNEST, Tuple.tuple()
+                .addArrayOfString(names)
+                .addArrayOfString(emails)
+                .addArrayOfString(phones)
+                .addArrayOfString(companies)
+                .addLocalDateTime(LocalDateTime.now()))
+            .onComplete(ar -> TableVersion.CUSTOMERS.bump())
+            .mapEmpty();
     }
 
     public Future<Customer> update(Integer id, Customer customer) {
-        return db.preparedQuery(
-            "UPDATE customers SET name = $1, email = $2, phone = $3, company = $4 WHERE id = $5 RETURNING id, name, email, phone, company, created_at")
-            .execute(Tuple.of(customer.getName(), customer.getEmail(), customer.getPhone(), 
+        return db.execute(UPDATE, Tuple.of(customer.getName(), customer.getEmail(), customer.getPhone(), 
                 customer.getCompany(), id))
             .map(rows -> {
                 if (rows.iterator().hasNext()) {
                     return mapRow(rows.iterator().next());
                 }
                 return null;
-            });
+            })
+            .onComplete(ar -> TableVersion.CUSTOMERS.bump());
     }
 
     public Future<Void> delete(Integer id) {
-        return db.preparedQuery("DELETE FROM customers WHERE id = $1")
-            .execute(Tuple.of(id))
+        return db.execute(DELETE, Tuple.of(id))
+            .onComplete(ar -> TableVersion.CUSTOMERS.bump())
             .map(rows -> null);
     }
 
-    private Customer mapRow(Row row) {
+    /**
+     * Writes a row selected with {@link #SELECT_COLUMNS} exactly as {@code CustomerRoutes.toJson} would.
+     */
+    public static void writeJson(Row row, JsonGenerator json) throws IOException {
+        writeJson(json, row.getInteger("id"), row.getString("name"), row.getString("email"), row.getString("phone"),
+            row.getLocalDateTime("created_at"), row.getString("company"));
+    }
+
+    private static void writeJson(JsonGenerator json, Integer id, String name, String email, String phone,
+                                  LocalDateTime createdAt, String company) throws IOException {
+        json.writeStartObject();
+        JsonRows.writeIntegerField(json, "id", id);
+        json.writeStringField("name", name);
+        json.writeStringField("email", email);
+        json.writeStringField("phone", phone);
+        JsonRows.writeTimestampField(json, "createdAt", createdAt);
+        if (company != null) {
+            json.writeStringField("company", company);
+        }
+        json.writeEndObject();
+    }
+
+    public static Customer mapRow(Row row) {
         return new Customer(
             row.getInteger("id"),
             row.getString("name"),
@@ -0,0 +1,145 @@
+package com.salesmanagement.repositories;
+
+import com.salesmanagement.models.PageCursor;
+import io.vertx.core.Future;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.Tuple;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Write-behind copy of customer names and emails onto their orders and the customer's sales
+ * rollup. {@code CustomerRepository} queues a customer in {@code customer_order_sync} when an update
+ * changes their name or email; the background sync walks each queued customer's orders newest first
+ * in fixed-size chunks, one short statement per chunk, so no transaction ever locks more than a
+ * chunk of a big account's orders.
+ */
+public class CustomerSyncRepository {
+    private static final Query SELECT_QUEUED = new Query("selectQueued",
+        "SELECT customer_id, generation FROM customer_order_sync ORDER BY queued_at LIMIT $1", ConcurrencyLimiter.Priority.LOW);
+    // Background work, so it yields to requests when the database is busy
+    private static final Query FIRST_CHUNK = new Query("syncChunk", syncChunk(null, "$2"), ConcurrencyLimiter.Priority.LOW);
+    private static final Query NEXT_CHUNK = new Query("syncChunk", syncChunk("($2, $3)", "$4"), ConcurrencyLimiter.Priority.LOW);
+    // A newer edit has taken a new generation by now, and keeps the customer queued
+    private static final Query DEQUEUE = new Query("dequeue",
+        "DELETE FROM customer_order_sync WHERE customer_id = $1 AND generation = $2", ConcurrencyLimiter.Priority.LOW);
+
+    static final List<Query> QUERIES = List.of(SELECT_QUEUED, FIRST_CHUNK, NEXT_CHUNK, DEQUEUE);
+
+    private final MeteredPool db;
+
+    public CustomerSyncRepository(PgPool db) {
+        this.db = new MeteredPool(db, "CustomerSyncRepository");
+    }
+
+    /**
+     * Copies customer {@code $1}'s current name and email onto the next {@code limit} of their
+     * orders after {@code after}, skipping orders already up to date, and records an {@code updated}
+     * outbox event for each order it rewrites. The name also goes onto the customer's
+     * {@code sales_by_customer} row. Returns how many orders were scanned and updated
+     * and where the chunk ended.
+     */
+    private static String syncChunk(String after, String limit) {
+        return "WITH customer AS (SELECT name, email FROM customers WHERE id = $1),"
+            + " chunk AS (SELECT id, created_at FROM orders WHERE customer_id = $1"
+            + (after != null ? " AND (created_at, id) < " + after : "")
+            + " ORDER BY created_at DESC, id DESC LIMIT " + limit + "),"
+            + " updated AS (UPDATE orders o SET customer_name = customer.name, customer_email = customer.email"
+            + " FROM customer, chunk WHERE o.id = chunk.id"
+            + " AND (o.customer_name IS DISTINCT FROM customer.name OR o.customer_email IS DISTINCT FROM customer.email)"
+            + " RETURNING o.*),"
+            // Like every other order write, each rewritten order records an outbox event
+            + " events AS (INSERT INTO outbox_events (aggregate, aggregate_id, type, payload)"
+            + " SELECT '" + OutboxRepository.ORDER + "', u.id, 'updated', " + OrderRepository.eventPayload("u") + " FROM updated u),"
+            // Top-customer reports show the rollup's name; after the first chunk this finds nothing to change
+            + " rollup AS (UPDATE sales_by_customer r SET customer_name = customer.name FROM customer"
+            + " WHERE r.customer_id = $1 AND r.customer_name IS DISTINCT FROM customer.name)"
+            + " SELECT (SELECT count(*) FROM chunk)::int AS scanned, (SELECT count(*) FROM updated)::int AS updated,"
+            + " last.created_at, last.id"
+            + " FROM (SELECT 1) one LEFT JOIN (SELECT created_at, id FROM chunk ORDER BY created_at, id LIMIT 1) last ON true";
+    }
+
+    /**
+     * Up to {@code limit} queued customers, longest waiting first.
+     */
+    public Future<List<Queued>> queued(int limit) {
+        return db.execute(SELECT_QUEUED, Tuple.of(limit))
+            .map(rows -> {
+                List<Queued> queued = new ArrayList<>(rows.size());
+                for (Row row : rows) {
+                    queued.add(new Queued(row.getInteger("customer_id"), row.getLong("generation")));
+                }
+                return queued;
+            });
+    }
+
+    /**
+     * Syncs one chunk of up to {@code chunkSize} orders, starting after {@code after} (null for the
+     * newest). Each call is its own statement and transaction.
+     */
+    public Future<Chunk> syncChunk(Integer customerId, PageCursor after, int chunkSize) {
+        return (after == null
+                ? db.execute(FIRST_CHUNK, Tuple.of(customerId, chunkSize))
+                : db.execute(NEXT_CHUNK, Tuple.of(customerId, after.getCreatedAt(), after.getId(), chunkSize)))
+            .map(rows -> {
+                Row row = rows.iterator().next();
+                int scanned = row.getInteger("scanned");
+                PageCursor next = scanned < chunkSize ? null : new PageCursor(row.getLocalDateTime("created_at"), row.getInteger("id"));
+                return new Chunk(row.getInteger("updated"), next);
+            })
+            .onSuccess(chunk -> {
+                if (chunk.getUpdated() > 0) {
+                    TableVersion.ORDERS.bump();
+                }
+            });
+    }
+
+    /**
+     * Drops the customer from the queue unless they were edited again since {@link #queued} read it.
+     */
+    public Future<Void> dequeue(Queued queued) {
+        return db.execute(DEQUEUE, Tuple.of(queued.getCustomerId(), queued.getGeneration()))
+            .mapEmpty();
+    }
+
+    public static class Queued {
+        private final Integer customerId;
+        private final long generation;
+
+        Queued(Integer customerId, long generation) {
+            this.customerId = customerId;
+            this.generation = generation;
+        }
+
+        public Integer getCustomerId() {
+            return customerId;
+        }
+
+        public long getGeneration() {
+            return generation;
+        }
+    }
+
+    public static class Chunk {
+        private final int updated;
+        private final PageCursor next;
+
+        Chunk(int updated, PageCursor next) {
+            this.updated = updated;
+            this.next = next;
+        }
+
+        public int getUpdated() {
+            return updated;
+        }
+
+        /**
+         * Where the next chunk starts, or null once the customer's orders are all done.
+         */
+        public PageCursor getNext() {
+            return next;
+        }
+    }
+}
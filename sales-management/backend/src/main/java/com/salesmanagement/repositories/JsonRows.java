@@ -0,0 +1,145 @@
+package com.salesmanagement.repositories;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.vertx.sqlclient.Row;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.function.Function;
+
+/**
+ * Encodes query results straight from {@link Row}s into a Netty buffer with Jackson's streaming
+ * generator, skipping the model objects, {@code JsonObject} trees and intermediate strings of the
+ * {@code toJson(...).encode()} path. Output is byte-for-byte what that path produces.
+ */
+public final class JsonRows {
+    private static final JsonFactory FACTORY = new JsonFactory();
+    private static final int INITIAL_CAPACITY = 4096;
+
+    private JsonRows() {
+    }
+
+    /**
+     * Writes one row as a JSON object, in the field order of the matching {@code toJson}.
+     */
+    @FunctionalInterface
+    public interface RowWriter {
+        void write(Row row, JsonGenerator json) throws IOException;
+    }
+
+    /**
+     * Writes one JSON value from a whole result, for responses that combine several rows.
+     */
+    @FunctionalInterface
+    public interface RowsWriter {
+        void write(Iterable<Row> rows, JsonGenerator json) throws IOException;
+    }
+
+    /**
+     * A pooled direct buffer for a one-shot response. The caller owns it and must release it
+     * once it has been written (vert.x does not release buffers it did not allocate).
+     */
+    public static ByteBuf pooledBuffer() {
+        return PooledByteBufAllocator.DEFAULT.directBuffer(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Writes {@code {"items":[...],"nextCursor":...}} for a keyset page. {@code rows} holds up to
+     * {@code limit + 1} rows; the extra row only signals that another page exists, and
+     * {@code cursorOf} then encodes the cursor from the last row on this page.
+     */
+    public static void writePage(ByteBuf out, Iterable<Row> rows, int limit, RowWriter writer,
+                                 Function<Row, String> cursorOf) {
+        try (JsonGenerator json = generator(out)) {
+            writePage(json, rows, limit, writer, cursorOf);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the page object of {@link #writePage(ByteBuf, Iterable, int, RowWriter, Function)} as
+     * a value inside a larger response.
+     */
+    public static void writePage(JsonGenerator json, Iterable<Row> rows, int limit, RowWriter writer,
+                                 Function<Row, String> cursorOf) throws IOException {
+        json.writeStartObject();
+        json.writeFieldName("items");
+        json.writeStartArray();
+        int count = 0;
+        Row last = null;
+        String nextCursor = null;
+        for (Row row : rows) {
+            if (count == limit) {
+                nextCursor = cursorOf.apply(last);
+                break;
+            }
+            writer.write(row, json);
+            last = row;
+            count++;
+        }
+        json.writeEndArray();
+        json.writeStringField("nextCursor", nextCursor);
+        json.writeEndObject();
+    }
+
+    /**
+     * Writes the value {@code writer} builds from all of {@code rows}.
+     */
+    public static void writeRows(ByteBuf out, Iterable<Row> rows, RowsWriter writer) {
+        try (JsonGenerator json = generator(out)) {
+            writer.write(rows, json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes a single row, optionally preceded by a comma, for streaming a JSON array row by row.
+     */
+    public static void writeElement(ByteBuf out, Row row, RowWriter writer, boolean first) {
+        if (!first) {
+            out.writeByte(',');
+        }
+        try (JsonGenerator json = generator(out)) {
+            writer.write(row, json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Field helpers for nullable columns; JsonObject writes a null value rather than omitting the field
+
+    public static void writeIntegerField(JsonGenerator json, String name, Integer value) throws IOException {
+        json.writeFieldName(name);
+        if (value == null) {
+            json.writeNull();
+        } else {
+            json.writeNumber(value);
+        }
+    }
+
+    public static void writeDoubleField(JsonGenerator json, String name, Double value) throws IOException {
+        json.writeFieldName(name);
+        if (value == null) {
+            json.writeNull();
+        } else {
+            json.writeNumber(value);
+        }
+    }
+
+    public static void writeTimestampField(JsonGenerator json, String name, LocalDateTime value) throws IOException {
+        json.writeStringField(name, value != null ? value.toString() : null);
+    }
+
+    private static JsonGenerator generator(ByteBuf out) throws IOException {
+        return FACTORY.createGenerator((OutputStream) new ByteBufOutputStream(out), JsonEncoding.UTF8);
+    }
+}
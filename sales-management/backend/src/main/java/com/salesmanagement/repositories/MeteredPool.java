@@ -0,0 +1,186 @@
+package com.salesmanagement.repositories;
+
+import com.salesmanagement.config.MetricsConfig;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.vertx.core.Future;
+import io.vertx.pgclient.PgException;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.SqlConnection;
+import io.vertx.sqlclient.Tuple;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Runs repository queries on a borrowed pool connection and records how long each repository
+ * method takes ({@code db.query}) and how long it waited for a connection ({@code db.pool.wait}).
+ * The vert.x SQL client has no pool metrics of its own, so the in-use and waiting gauges are
+ * counted here; all repositories share the one process-wide pool, so the counters are static.
+ * Every call first takes a slot from the process-wide {@link ConcurrencyLimiter}, and
+ * {@code db.query} starts once it has one.
+ */
+final class MeteredPool {
+    private static final ConcurrencyLimiter LIMITER = ConcurrencyLimiter.DATABASE;
+    private static final AtomicInteger IN_USE = new AtomicInteger();
+    private static final AtomicInteger WAITING = new AtomicInteger();
+    private static final Map<String, Timer> QUERY_TIMERS = new ConcurrentHashMap<>();
+    private static final Timer POOL_WAIT;
+
+    static {
+        MeterRegistry registry = MetricsConfig.registry();
+        Gauge.builder("db.pool.in.use", IN_USE, AtomicInteger::get)
+            .description("Connections currently borrowed by repository calls")
+            .register(registry);
+        Gauge.builder("db.pool.waiting", WAITING, AtomicInteger::get)
+            .description("Repository calls queued for a connection")
+            .register(registry);
+        POOL_WAIT = Timer.builder("db.pool.wait")
+            .description("Time spent waiting for a pool connection")
+            .publishPercentileHistogram()
+            .register(registry);
+    }
+
+    private final PgPool pool;
+    private final ReplicaSet replicas;
+    private final String repository;
+
+    MeteredPool(PgPool pool, String repository) {
+        this(pool, ReplicaSet.NONE, repository);
+    }
+
+    MeteredPool(PgPool pool, ReplicaSet replicas, String repository) {
+        this.pool = pool;
+        this.replicas = replicas;
+        this.repository = repository;
+    }
+
+    Future<RowSet<Row>> execute(Query query, Tuple params) {
+        return LIMITER.run(query.priority, true, () -> executeOnPrimary(query, params));
+    }
+
+    Future<RowSet<Row>> executeBatch(Query query, List<Tuple> batch) {
+        return LIMITER.run(query.priority, false, () -> withConnection(query.method, conn -> query.on(conn).executeBatch(batch)));
+    }
+
+    /**
+     * Runs a read on a replica when {@link ReplicaSet#pick} allows it, else on the primary. A read
+     * that can't reach its replica is retried once on the primary; reads have no side effects, so
+     * that is always safe. SQL errors are not retried, they would fail the same way there.
+     */
+    Future<RowSet<Row>> read(Query query, Tuple params, TableVersion table) {
+        return LIMITER.run(query.priority, true, () -> {
+            int replica = replicas.pick(table);
+            if (replica < 0) {
+                return executeOnPrimary(query, params);
+            }
+            return onReplica(replica, query.method, false, conn -> query.execute(conn, params))
+                .recover(err -> {
+                    if (err instanceof PgException) {
+                        return Future.failedFuture(err);
+                    }
+                    ReplicaSet.markDown(replica, err);
+                    // Still within this call's limiter slot
+                    return executeOnPrimary(query, params);
+                });
+        });
+    }
+
+    /**
+     * A read-only transaction, for cursors, on a replica when {@link ReplicaSet#pick} allows it.
+     * It isn't retried: by the time it fails, {@code work} may already have produced output.
+     */
+    <T> Future<T> withReadTransaction(String method, ConcurrencyLimiter.Priority priority, TableVersion table,
+                                      Function<SqlConnection, Future<T>> work) {
+        return LIMITER.run(priority, false, () -> {
+            int replica = replicas.pick(table);
+            if (replica < 0) {
+                return transactionOnPrimary(method, work);
+            }
+            return onReplica(replica, method, true, work);
+        });
+    }
+
+    /**
+     * Several statements on one primary connection, each committing on its own.
+     */
+    <T> Future<T> withConnection(String method, ConcurrencyLimiter.Priority priority, Function<SqlConnection, Future<T>> work) {
+        return LIMITER.run(priority, false, () -> withConnection(method, work));
+    }
+
+    <T> Future<T> withTransaction(String method, Function<SqlConnection, Future<T>> work) {
+        return withTransaction(method, ConcurrencyLimiter.Priority.NORMAL, work);
+    }
+
+    <T> Future<T> withTransaction(String method, ConcurrencyLimiter.Priority priority, Function<SqlConnection, Future<T>> work) {
+        return LIMITER.run(priority, false, () -> transactionOnPrimary(method, work));
+    }
+
+    private Future<RowSet<Row>> executeOnPrimary(Query query, Tuple params) {
+        return withConnection(query.method, conn -> query.execute(conn, params));
+    }
+
+    private <T> Future<T> withConnection(String method, Function<SqlConnection, Future<T>> work) {
+        Lease lease = new Lease();
+        return lease.release(method, pool.withConnection(conn -> lease.acquired(conn, work)));
+    }
+
+    private <T> Future<T> transactionOnPrimary(String method, Function<SqlConnection, Future<T>> work) {
+        Lease lease = new Lease();
+        return lease.release(method, pool.withTransaction(conn -> lease.acquired(conn, work)));
+    }
+
+    private <T> Future<T> onReplica(int replica, String method, boolean transaction, Function<SqlConnection, Future<T>> work) {
+        Lease lease = new Lease();
+        return lease.release(method, replicas.run(replica, replicaPool -> transaction
+            ? replicaPool.withTransaction(conn -> lease.acquired(conn, work))
+            : replicaPool.withConnection(conn -> lease.acquired(conn, work))));
+    }
+
+    private Timer queryTimer(String method, boolean succeeded) {
+        String outcome = succeeded ? "success" : "failure";
+        return QUERY_TIMERS.computeIfAbsent(repository + '.' + method + '.' + outcome, key -> Timer.builder("db.query")
+            .description("Repository method latency, including the wait for a connection")
+            .tag("repository", repository)
+            .tag("method", method)
+            .tag("outcome", outcome)
+            .publishPercentileHistogram()
+            .register(MetricsConfig.registry()));
+    }
+
+    private final class Lease {
+        private final long start = System.nanoTime();
+        private boolean acquired;
+
+        Lease() {
+            WAITING.incrementAndGet();
+        }
+
+        <T> Future<T> acquired(SqlConnection conn, Function<SqlConnection, Future<T>> work) {
+            acquired = true;
+            WAITING.decrementAndGet();
+            IN_USE.incrementAndGet();
+            POOL_WAIT.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return work.apply(conn);
+        }
+
+        <T> Future<T> release(String method, Future<T> result) {
+            return result.onComplete(ar -> {
+                if (acquired) {
+                    IN_USE.decrementAndGet();
+                } else {
+                    // The pool never handed out a connection (acquire timed out or the pool closed)
+                    WAITING.decrementAndGet();
+                }
+                queryTimer(method, ar.succeeded()).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            });
+        }
+    }
+}
@@ -1,86 +1,374 @@
 package com.salesmanagement.repositories;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.salesmanagement.models.IdempotencyKey;
 import com.salesmanagement.models.Order;
 import com.salesmanagement.models.Order.OrderItem;
+import com.salesmanagement.models.PageCursor;
+import io.netty.buffer.ByteBuf;
 import io.vertx.core.Future;
-import io.vertx.core.json.JsonArray;
-import io.vertx.core.json.JsonObject;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.WriteStream;
 import io.vertx.pgclient.PgPool;
 import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.SqlConnection;
 import io.vertx.sqlclient.Tuple;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
 
 public class OrderRepository {
-    private final PgPool db;
+    // Items for each order on the page are folded into parallel arrays by one index lookup per order
+    private static final String ITEMS_JOIN = " LEFT JOIN LATERAL ("
+        + "SELECT array_agg(product_id ORDER BY line_no) AS product_ids,"
+        + " array_agg(product_name ORDER BY line_no) AS product_names,"
+        + " array_agg(unit_price::float8 ORDER BY line_no) AS unit_prices,"
+        + " array_agg(quantity ORDER BY line_no) AS quantities,"
+        + " array_agg(line_total::float8 ORDER BY line_no) AS line_totals"
+        + " FROM order_items WHERE order_id = o.id) i ON true";
+    private static final Query FIRST_PAGE = new Query("writePage", selectOrders(" ORDER BY created_at DESC, id DESC LIMIT $1"),
+        ConcurrencyLimiter.Priority.LOW);
+    private static final Query NEXT_PAGE = new Query("writePage",
+        selectOrders(" WHERE (created_at, id) < ($1, $2) ORDER BY created_at DESC, id DESC LIMIT $3"), ConcurrencyLimiter.Priority.LOW);
+    private static final Query FIND_BY_ID = new Query("findById", selectOrders(" WHERE id = $1"));
+    private static final Query SELECT_PRODUCTS = new Query("selectProducts", "SELECT id, name, price, category FROM products WHERE id = ANY($1)");
+    private static final Query DECREMENT_STOCK = new Query("decrementStock", OutboxRepository.recording(OutboxRepository.PRODUCT, "updated",
+        "UPDATE products SET stock = stock - $1 WHERE id = $2 AND stock >= $1"));
+    // The name and email are the customer's current ones. The share lock makes a concurrent rename
+    // wait for this order to commit, so the order sync queued by the rename will see the order
+    private static final Query INSERT = new Query("insertOrder",
+        "INSERT INTO orders (created_at, customer_id, customer_name, customer_email, total)"
+            + " SELECT $1, id, name, email, $3 FROM customers WHERE id = $2 FOR SHARE"
+            + " RETURNING id, created_at, customer_name, customer_email");
+    private static final Query INSERT_ITEMS = new Query("insertItems",
+        "INSERT INTO order_items (order_id, line_no, product_id, product_name, unit_price, quantity, line_total, category)"
+            + " VALUES ($1, $2, $3, $4, $5, $6, $7, $8)");
+    private static final Query DELETE = new Query("deleteOrder", "DELETE FROM orders WHERE id = $1");
+    // The event carries the order row with its items; on delete it is recorded before the rows go.
+    // Line deltas use the category recorded with the line, so a delete takes revenue back from the
+    // category that got it even if the product has been re-categorized or deleted since
+    private static final Query RECORD_CHANGE = new Query("recordChange",
+        "WITH event AS ("
+            + "INSERT INTO outbox_events (aggregate, aggregate_id, type, payload) "
+            + "SELECT '" + OutboxRepository.ORDER + "', o.id, CASE WHEN $2::INTEGER > 0 THEN 'created' ELSE 'deleted' END, "
+            + eventPayload("o") + " FROM orders o WHERE o.id = $1) "
+            + "INSERT INTO sales_rollup_deltas (day, customer_id, customer_name, product_id, product_name, category, quantity, revenue, orders) "
+            + "SELECT created_at::DATE, customer_id, customer_name, NULL, NULL, NULL, 0, $2::INTEGER * total, $2::INTEGER FROM orders WHERE id = $1 "
+            + "UNION ALL "
+            + "SELECT o.created_at::DATE, o.customer_id, o.customer_name, i.product_id, i.product_name, i.category, $2::INTEGER * i.quantity, $2::INTEGER * i.line_total, 0 "
+            + "FROM order_items i JOIN orders o ON o.id = i.order_id "
+            + "WHERE i.order_id = $1");
+    // Waits while another transaction holds the same key, then inserts nothing if that one committed
+    private static final Query CLAIM_KEY = new Query("claimIdempotencyKey",
+        "INSERT INTO order_idempotency_keys (user_id, idempotency_key, request_hash) VALUES ($1, $2, $3) ON CONFLICT DO NOTHING");
+    private static final Query SAVE_RESPONSE = new Query("saveIdempotentResponse",
+        "UPDATE order_idempotency_keys SET order_id = $3, response = $4 WHERE user_id = $1 AND idempotency_key = $2");
+    private static final Query FIND_KEY = new Query("findIdempotencyKey",
+        "SELECT request_hash, response FROM order_idempotency_keys WHERE user_id = $1 AND idempotency_key = $2");
+    private static final Query EXPIRE_KEYS = new Query("expireIdempotencyKeys",
+        "DELETE FROM order_idempotency_keys WHERE (user_id, idempotency_key) IN "
+            + "(SELECT user_id, idempotency_key FROM order_idempotency_keys WHERE created_at < LOCALTIMESTAMP - make_interval(hours => $1) LIMIT $2)");
+
+    static final List<Query> QUERIES = List.of(FIRST_PAGE, NEXT_PAGE, FIND_BY_ID, SELECT_PRODUCTS, DECREMENT_STOCK,
+        INSERT, INSERT_ITEMS, DELETE, RECORD_CHANGE, CLAIM_KEY, SAVE_RESPONSE, FIND_KEY, EXPIRE_KEYS);
+
+    private final MeteredPool db;
+    private final SingleFlight<Integer, Order> byId;
 
     public OrderRepository(PgPool db) {
-        this.db = db;
+        this(db, ReplicaSet.NONE);
     }
 
-    public Future<List<Order>> findAll() {
-        return db.query("SELECT id, created_at, customer_id, customer_name, customer_email, items, total FROM orders ORDER BY created_at DESC")
-            .execute()
-            .map(rows -> {
-                List<Order> orders = new ArrayList<>();
-                for (Row row : rows) {
-                    orders.add(mapRow(row));
-                }
-                return orders;
-            });
+    public OrderRepository(PgPool db, ReplicaSet replicas) {
+        this.db = new MeteredPool(db, replicas, "OrderRepository");
+        this.byId = new SingleFlight<>("OrderRepository", "findById", TableVersion.ORDERS);
+    }
+
+    /**
+     * Selects orders matching {@code filter} (a WHERE/LIMIT suffix on {@code orders}) with their
+     * items, newest first. The filter is applied before the join so LIMIT bounds the item lookups.
+     */
+    private static String selectOrders(String filter) {
+        return "SELECT o.id, o.created_at, o.customer_id, o.customer_name, o.customer_email, o.total,"
+            + " i.product_ids, i.product_names, i.unit_prices, i.quantities, i.line_totals"
+            + " FROM (SELECT id, created_at, customer_id, customer_name, customer_email, total FROM orders" + filter + ") o"
+            + ITEMS_JOIN
+            + " ORDER BY o.created_at DESC, o.id DESC";
+    }
+
+    /**
+     * The outbox payload for the order row {@code order} (a table alias): the row with its items.
+     */
+    static String eventPayload(String order) {
+        return "(to_jsonb(" + order + ") - 'items') || jsonb_build_object('items', "
+            + "(SELECT jsonb_agg(to_jsonb(i) - 'order_id' - 'category' ORDER BY i.line_no) FROM order_items i WHERE i.order_id = " + order + ".id))";
+    }
+
+    /**
+     * Selects one page of a customer's orders, newest first, in the row shape of
+     * {@link #selectOrders}. {@code customerId}, {@code after} (a {@code (created_at, id)} row,
+     * or null for the first page) and {@code limit} are SQL expressions, so the page can be embedded
+     * in a larger statement; {@code idx_orders_customer_created_at_id} serves both the filter and
+     * the order, so a page reads only its own rows.
+     */
+    static String selectCustomerOrders(String customerId, String after, String limit) {
+        return selectOrders(" WHERE customer_id = " + customerId
+            + (after != null ? " AND (created_at, id) < " + after : "")
+            + " ORDER BY created_at DESC, id DESC LIMIT " + limit);
+    }
+
+    /**
+     * Selects {@code order_count} and {@code revenue} over all of a customer's orders, found through
+     * an index on {@code customer_id}. {@code customerId} is an SQL expression.
+     */
+    static String selectCustomerTotals(String customerId) {
+        return "SELECT count(*) AS order_count, COALESCE(SUM(total), 0)::float8 AS revenue FROM orders WHERE customer_id = " + customerId;
+    }
+
+    /**
+     * The cursor for the page after {@code last}, a row produced by {@link #selectOrders}.
+     */
+    static String cursorOf(Row last) {
+        return new PageCursor(last.getLocalDateTime("created_at"), last.getInteger("id")).encode();
+    }
+
+    /**
+     * Writes one keyset page as the list response body ({@code {"items":[...],"nextCursor":...}})
+     * into {@code out}, encoding straight from the rows.
+     */
+    public Future<Void> writePage(PageCursor after, int limit, ByteBuf out) {
+        Future<RowSet<Row>> query;
+        if (after == null) {
+            query = db.read(FIRST_PAGE, Tuple.of(limit + 1), TableVersion.ORDERS);
+        } else {
+            query = db.read(NEXT_PAGE, Tuple.of(after.getCreatedAt(), after.getId(), limit + 1), TableVersion.ORDERS);
+        }
+        return query.map(rows -> {
+            JsonRows.writePage(out, rows, limit, OrderRepository::writeJson, OrderRepository::cursorOf);
+            return null;
+        });
+    }
+
+    public Future<Void> streamAll(WriteStream<Buffer> out) {
+        return RowStreams.writeJsonArray(db, "streamAll", TableVersion.ORDERS, selectOrders(" ORDER BY created_at DESC, id DESC"), Tuple.tuple(),
+            OrderRepository::writeJson, out);
     }
 
     public Future<Order> findById(Integer id) {
-        return db.preparedQuery("SELECT id, created_at, customer_id, customer_name, customer_email, items, total FROM orders WHERE id = $1")
-            .execute(Tuple.of(id))
+        return byId.run(id, () -> db.read(FIND_BY_ID, Tuple.of(id), TableVersion.ORDERS)
             .map(rows -> {
                 if (rows.iterator().hasNext()) {
                     return mapRow(rows.iterator().next());
                 }
                 return null;
-            });
+            }));
     }
 
+    /**
+     * Places an order in a single transaction: prices and names come from {@code products} and the
+     * customer's name and email from {@code customers} (client supplied values are ignored), stock
+     * is decremented only if enough remains, and nothing is written if any line can't be fulfilled.
+     */
     public Future<Order> create(Order order) {
-        JsonArray itemsJson = new JsonArray();
+        return create(order, null, null);
+    }
+
+    /**
+     * Places an order like {@link #create(Order)}, once per {@code key}: the key is claimed in the
+     * same transaction and the encoded {@code response} of the new order is stored with it, byte for
+     * byte. If the key was already used, nothing is written and the future fails with
+     * {@link DuplicateRequestException} holding the stored response. A failed attempt leaves the key
+     * free for a retry.
+     */
+    public Future<Order> create(Order order, IdempotencyKey key, Function<Order, Buffer> response) {
+        // Sum quantities per product; the sorted map also fixes the order rows are locked in,
+        // so concurrent orders touching the same products can't deadlock
+        TreeMap<Integer, Integer> quantities = new TreeMap<>();
         for (OrderItem item : order.getItems()) {
-            itemsJson.add(new JsonObject()
-                .put("productId", item.getProductId())
-                .put("productName", item.getProductName())
-                .put("unitPrice", item.getUnitPrice())
-                .put("quantity", item.getQuantity())
-                .put("lineTotal", item.getLineTotal()));
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
         }
+        Map<Integer, String> categories = new HashMap<>();
+
+        return db.withTransaction("create", ConcurrencyLimiter.Priority.HIGH, conn -> claim(conn, key)
+            .compose(v -> SELECT_PRODUCTS.on(conn)
+                .execute(Tuple.tuple().addArrayOfInteger(quantities.keySet().toArray(new Integer[0]))))
+            .compose(rows -> {
+                Map<Integer, Row> products = new HashMap<>();
+                for (Row row : rows) {
+                    products.put(row.getInteger("id"), row);
+                }
+                double total = 0;
+                for (OrderItem item : order.getItems()) {
+                    Row product = products.get(item.getProductId());
+                    if (product == null) {
+                        return Future.failedFuture(new UnknownProductException(item.getProductId()));
+                    }
+                    item.setProductName(product.getString("name"));
+                    categories.put(item.getProductId(), product.getString("category"));
+                    item.setUnitPrice(product.getDouble("price"));
+                    item.setLineTotal(item.getUnitPrice() * item.getQuantity());
+                    total += item.getLineTotal();
+                }
+                order.setTotal(total);
+
+                List<Tuple> decrements = new ArrayList<>();
+                quantities.forEach((productId, quantity) -> decrements.add(Tuple.of(quantity, productId)));
+                return DECREMENT_STOCK.on(conn)
+                    .executeBatch(decrements);
+            })
+            .compose(updated -> {
+                // executeBatch returns one chained result per tuple, in submission order
+                RowSet<Row> result = updated;
+                for (Integer productId : quantities.keySet()) {
+                    if (result.rowCount() == 0) {
+                        return Future.failedFuture(new InsufficientStockException(productId));
+                    }
+                    result = result.next();
+                }
+                return INSERT.on(conn)
+                    .execute(Tuple.of(LocalDateTime.now(), order.getCustomerId(), order.getTotal()));
+            })
+            .compose(rows -> {
+                if (rows.rowCount() == 0) {
+                    return Future.failedFuture(new UnknownCustomerException(order.getCustomerId()));
+                }
+                Row row = rows.iterator().next();
+                order.setId(row.getInteger("id"));
+                order.setCreatedAt(row.getLocalDateTime("created_at"));
+                order.setCustomerName(row.getString("customer_name"));
+                order.setCustomerEmail(row.getString("customer_email"));
 
-        return db.preparedQuery(
-            "INSERT INTO orders (created_at, customer_id, customer_name, customer_email, items, total) VALUES ($1, $2, $3, $4, $5::jsonb, $6) RETURNING id, created_at, customer_id, customer_name, customer_email, items, total")
-            .execute(Tuple.of(LocalDateTime.now(), order.getCustomerId(), order.getCustomerName(), 
-                order.getCustomerEmail(), itemsJson.toString(), order.getTotal()))
-            .map(rows -> mapRow(rows.iterator().next()));
+                List<Tuple> lines = new ArrayList<>(order.getItems().size());
+                for (int i = 0; i < order.getItems().size(); i++) {
+                    OrderItem item = order.getItems().get(i);
+                    lines.add(Tuple.of(order.getId(), i + 1, item.getProductId(), item.getProductName(),
+                        item.getUnitPrice(), item.getQuantity(), item.getLineTotal(), categories.get(item.getProductId())));
+                }
+                return INSERT_ITEMS.on(conn)
+                    .executeBatch(lines);
+            })
+            .compose(rows -> recordChange(conn, order.getId(), 1))
+            .compose(v -> key == null ? Future.succeededFuture() : SAVE_RESPONSE.on(conn)
+                .execute(Tuple.of(key.getUserId(), key.getKey(), order.getId(), response.apply(order))))
+            .map(v -> order))
+            .recover(err -> err instanceof KeyTakenException ? findDuplicate(key) : Future.failedFuture(err))
+            // Placing an order changes product stock
+            .onComplete(ar -> {
+                TableVersion.ORDERS.bump();
+                TableVersion.PRODUCTS.bump();
+            });
     }
 
     public Future<Void> delete(Integer id) {
-        return db.preparedQuery("DELETE FROM orders WHERE id = $1")
-            .execute(Tuple.of(id))
-            .map(rows -> null);
-    }
-
-    private Order mapRow(Row row) {
-        JsonArray itemsJson = row.get(JsonArray.class, row.getColumnIndex("items"));
-        List<OrderItem> items = new ArrayList<>();
-        
-        if (itemsJson != null) {
-            for (int i = 0; i < itemsJson.size(); i++) {
-                JsonObject itemJson = itemsJson.getJsonObject(i);
-                items.add(new OrderItem(
-                    itemJson.getInteger("productId"),
-                    itemJson.getString("productName"),
-                    itemJson.getDouble("unitPrice"),
-                    itemJson.getInteger("quantity"),
-                    itemJson.getDouble("lineTotal")
-                ));
+        return db.withTransaction("delete", conn -> recordChange(conn, id, -1)
+            .compose(v -> DELETE.on(conn)
+                .execute(Tuple.of(id)))
+            .map(rows -> (Void) null))
+            .onComplete(ar -> TableVersion.ORDERS.bump());
+    }
+
+    /**
+     * Deletes up to {@code batchSize} idempotency keys older than {@code ttlHours} and returns how
+     * many went; callers loop until fewer than {@code batchSize} are deleted.
+     */
+    public Future<Integer> expireIdempotencyKeys(int ttlHours, int batchSize) {
+        return db.execute(EXPIRE_KEYS, Tuple.of(ttlHours, batchSize))
+            .map(RowSet::rowCount);
+    }
+
+    private Future<Void> claim(SqlConnection conn, IdempotencyKey key) {
+        if (key == null) {
+            return Future.succeededFuture();
+        }
+        return CLAIM_KEY.on(conn)
+            .execute(Tuple.of(key.getUserId(), key.getKey(), key.getRequestHash()))
+            .compose(rows -> rows.rowCount() == 1 ? Future.succeededFuture() : Future.failedFuture(new KeyTakenException()));
+    }
+
+    // Runs after the claiming transaction rolled back, so it reads the committed first attempt
+    private Future<Order> findDuplicate(IdempotencyKey key) {
+        return db.execute(FIND_KEY, Tuple.of(key.getUserId(), key.getKey()))
+            .compose(rows -> {
+                if (!rows.iterator().hasNext()) {
+                    // Expired between the claim and this lookup; the client can simply retry
+                    return Future.failedFuture(new IllegalStateException("Idempotency key " + key.getKey() + " expired while in use"));
+                }
+                Row row = rows.iterator().next();
+                return Future.failedFuture(new DuplicateRequestException(row.getString("request_hash"), row.getBuffer("response")));
+            });
+    }
+
+    /**
+     * Queues the order's contribution to the sales rollups, positive on create and negative on
+     * delete, and its outbox event. Appending rows here instead of updating the rollups directly
+     * keeps order writes off the shared per-day rows; {@code ReportRepository.applyDeltas} folds
+     * them in later.
+     */
+    private Future<Void> recordChange(SqlConnection conn, Integer orderId, int sign) {
+        return RECORD_CHANGE.on(conn)
+            .execute(Tuple.of(orderId, sign))
+            .mapEmpty();
+    }
+
+    /**
+     * Writes a row produced by {@link #selectOrders} exactly as {@code OrderRoutes.toJson} would.
+     */
+    public static void writeJson(Row row, JsonGenerator json) throws IOException {
+        json.writeStartObject();
+        JsonRows.writeIntegerField(json, "id", row.getInteger("id"));
+        JsonRows.writeTimestampField(json, "createdAt", row.getLocalDateTime("created_at"));
+        JsonRows.writeIntegerField(json, "customerId", row.getInteger("customer_id"));
+        json.writeStringField("customerName", row.getString("customer_name"));
+
+        json.writeFieldName("items");
+        json.writeStartArray();
+        Integer[] productIds = row.getArrayOfIntegers("product_ids");
+        if (productIds != null) {
+            String[] productNames = row.getArrayOfStrings("product_names");
+            Double[] unitPrices = row.getArrayOfDoubles("unit_prices");
+            Integer[] quantities = row.getArrayOfIntegers("quantities");
+            Double[] lineTotals = row.getArrayOfDoubles("line_totals");
+            for (int i = 0; i < productIds.length; i++) {
+                json.writeStartObject();
+                JsonRows.writeIntegerField(json, "productId", productIds[i]);
+                json.writeStringField("productName", productNames[i]);
+                JsonRows.writeDoubleField(json, "unitPrice", unitPrices[i]);
+                JsonRows.writeIntegerField(json, "quantity", quantities[i]);
+                JsonRows.writeDoubleField(json, "lineTotal", lineTotals[i]);
+                json.writeEndObject();
+            }
+        }
+        json.writeEndArray();
+
+        JsonRows.writeDoubleField(json, "total", row.getDouble("total"));
+        String customerEmail = row.getString("customer_email");
+        if (customerEmail != null) {
+            json.writeStringField("customerEmail", customerEmail);
+        }
+        json.writeEndObject();
+    }
+
+    /**
+     * Maps a row produced by {@link #selectOrders}; items arrive as parallel arrays ordered by line.
+     */
+    public static Order mapRow(Row row) {
+        Integer[] productIds = row.getArrayOfIntegers("product_ids");
+        List<OrderItem> items = new ArrayList<>(productIds != null ? productIds.length : 0);
+
+        if (productIds != null) {
+            String[] productNames = row.getArrayOfStrings("product_names");
+            Double[] unitPrices = row.getArrayOfDoubles("unit_prices");
+            Integer[] quantities = row.getArrayOfIntegers("quantities");
+            Double[] lineTotals = row.getArrayOfDoubles("line_totals");
+            for (int i = 0; i < productIds.length; i++) {
+                items.add(new OrderItem(productIds[i], productNames[i], unitPrices[i], quantities[i], lineTotals[i]));
             }
         }
 
@@ -94,4 +382,66 @@ public class OrderRepository {
             row.getDouble("total")
         );
     }
+
+    public static class UnknownProductException extends RuntimeException {
+        private final Integer productId;
+
+        public UnknownProductException(Integer productId) {
+            super("Product " + productId + " not found");
+            this.productId = productId;
+        }
+
+        public Integer getProductId() {
+            return productId;
+        }
+    }
+
+    public static class UnknownCustomerException extends RuntimeException {
+        public UnknownCustomerException(Integer customerId) {
+            super("Customer " + customerId + " not found");
+        }
+    }
+
+    public static class InsufficientStockException extends RuntimeException {
+        private final Integer productId;
+
+        public InsufficientStockException(Integer productId) {
+            super("Insufficient stock for product " + productId);
+            this.productId = productId;
+        }
+
+        public Integer getProductId() {
+            return productId;
+        }
+    }
+
+    /**
+     * An order was already placed under the idempotency key. {@link #getResponse} is what that
+     * request was answered with; {@link #getRequestHash} tells whether this is a retry of it.
+     */
+    public static class DuplicateRequestException extends RuntimeException {
+        private final String requestHash;
+        private final Buffer response;
+
+        public DuplicateRequestException(String requestHash, Buffer response) {
+            super("Idempotency key was already used", null, false, false);
+            this.requestHash = requestHash;
+            this.response = response;
+        }
+
+        public String getRequestHash() {
+            return requestHash;
+        }
+
+        public Buffer getResponse() {
+            return response;
+        }
+    }
+
+    // Rolls back the claiming transaction; never leaves this class
+    private static class KeyTakenException extends RuntimeException {
+        KeyTakenException() {
+            super(null, null, false, false);
+        }
+    }
 }
@@ -0,0 +1,125 @@
+package com.salesmanagement.repositories;
+
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonObject;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.SqlConnection;
+import io.vertx.sqlclient.Tuple;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Transactional outbox for product, customer and order changes. Writers record an event row in
+ * {@code outbox_events} as part of the write itself, so an event exists exactly when the change
+ * committed; {@link #drain} hands the rows to the relay in id order and deletes them once published.
+ */
+public class OutboxRepository {
+    static final String PRODUCT = "product";
+    static final String CUSTOMER = "customer";
+    static final String ORDER = "order";
+
+    // Held by the drain's session, so only one relay in the deployment publishes at a time
+    private static final long LOCK_KEY = 0x73616c65736f7574L;
+    private static final Query TRY_LOCK = new Query("drain", "SELECT pg_try_advisory_lock($1) AS locked");
+    private static final Query UNLOCK = new Query("drain", "SELECT pg_advisory_unlock($1)");
+    private static final Query SELECT_BATCH = new Query("drain",
+        "SELECT id, created_at, aggregate, aggregate_id, type, payload FROM outbox_events ORDER BY id LIMIT $1");
+    private static final Query DELETE_BATCH = new Query("drain", "DELETE FROM outbox_events WHERE id = ANY($1)");
+
+    static final List<Query> QUERIES = List.of(TRY_LOCK, UNLOCK, SELECT_BATCH, DELETE_BATCH);
+
+    private final MeteredPool db;
+
+    public OutboxRepository(PgPool db) {
+        this.db = new MeteredPool(db, "OutboxRepository");
+    }
+
+    /**
+     * Passes up to {@code batchSize} of the oldest events to {@code publish} and deletes them when
+     * it succeeds. The select and the delete are separate autocommit statements, so no transaction
+     * stays open while {@code publish} writes and syncs; the session advisory lock held between
+     * them keeps a second relay out. A failed publish leaves the events for the next call, so
+     * delivery is at least once; consumers can drop repeats by event id. Runs at low priority, so
+     * request queries overtake it. Returns the number published, 0 when another relay holds the lock.
+     */
+    public Future<Integer> drain(int batchSize, Function<List<JsonObject>, Future<Void>> publish) {
+        return db.withConnection("drain", ConcurrencyLimiter.Priority.LOW, conn -> TRY_LOCK.on(conn)
+            .execute(Tuple.of(LOCK_KEY))
+            .compose(locked -> {
+                if (!locked.iterator().next().getBoolean("locked")) {
+                    return Future.succeededFuture(0);
+                }
+                return publishBatch(conn, batchSize, publish)
+                    // The lock is held by the session, so it has to be released before the connection returns to the pool
+                    .eventually(() -> UNLOCK.on(conn).execute(Tuple.of(LOCK_KEY)));
+            }));
+    }
+
+    private static Future<Integer> publishBatch(SqlConnection conn, int batchSize, Function<List<JsonObject>, Future<Void>> publish) {
+        return SELECT_BATCH.on(conn)
+            .execute(Tuple.of(batchSize))
+            .compose(rows -> {
+                if (rows.size() == 0) {
+                    return Future.succeededFuture(0);
+                }
+                List<JsonObject> events = new ArrayList<>(rows.size());
+                Long[] ids = new Long[rows.size()];
+                for (Row row : rows) {
+                    ids[events.size()] = row.getLong("id");
+                    events.add(toJson(row));
+                }
+                return publish.apply(events)
+                    .compose(v -> DELETE_BATCH.on(conn).execute(Tuple.tuple().addArrayOfLong(ids)))
+                    .map(deleted -> events.size());
+            });
+    }
+
+    private static JsonObject toJson(Row row) {
+        return new JsonObject()
+            .put("id", row.getLong("id"))
+            .put("createdAt", row.getLocalDateTime("created_at").toString())
+            .put("aggregate", row.getString("aggregate"))
+            .put("aggregateId", row.getInteger("aggregate_id"))
+            .put("type", row.getString("type"))
+            .put("payload", row.getJsonObject("payload"));
+    }
+
+    /**
+     * Turns a single-statement write (no RETURNING clause) into one that also records a
+     * {@code type} event for every row it touches, with the row as payload. The event insert is a
+     * data-modifying CTE, so it costs no extra round trip. The statement returns {@code columns}
+     * of the written rows.
+     */
+    static String recording(String aggregate, String type, String write, String columns) {
+        return "WITH changed AS (" + write + " RETURNING *), events AS (" + insertEvents(aggregate, type) + ")"
+            + " SELECT " + columns + " FROM changed";
+    }
+
+    /**
+     * Like {@link #recording(String, String, String, String)}, with two more steps in the same
+     * statement. {@code before}, a complete {@code name AS (...)} CTE, runs ahead of the write,
+     * which can read it, e.g. to lock rows and keep their previous values. {@code followUp} is a
+     * further write that can read {@code changed} and {@code before}.
+     */
+    static String recording(String aggregate, String type, String before, String write, String columns, String followUp) {
+        return "WITH " + before + ", changed AS (" + write + " RETURNING *), events AS (" + insertEvents(aggregate, type) + "),"
+            + " follow_up AS (" + followUp + ")"
+            + " SELECT " + columns + " FROM changed";
+    }
+
+    /**
+     * Like {@link #recording(String, String, String, String)} for writes whose rows aren't read
+     * back; the row count is still the number of rows written.
+     */
+    static String recording(String aggregate, String type, String write) {
+        return "WITH changed AS (" + write + " RETURNING *) " + insertEvents(aggregate, type);
+    }
+
+    private static String insertEvents(String aggregate, String type) {
+        return "INSERT INTO outbox_events (aggregate, aggregate_id, type, payload)"
+            + " SELECT '" + aggregate + "', id, '" + type + "', to_jsonb(changed) FROM changed";
+    }
+}
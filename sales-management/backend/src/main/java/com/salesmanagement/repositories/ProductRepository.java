@@ -1,73 +1,201 @@
 package com.salesmanagement.repositories;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.salesmanagement.models.PageCursor;
 import com.salesmanagement.models.Product;
+import com.salesmanagement.models.ProductFilter;
+import io.netty.buffer.ByteBuf;
 import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.WriteStream;
 import io.vertx.pgclient.PgPool;
 import io.vertx.sqlclient.Row;
-import io.vertx.sqlclient.RowSet;
 import io.vertx.sqlclient.Tuple;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 public class ProductRepository {
-    private final PgPool db;
+    private static final String COLUMNS = "id, name, category, price, stock, description";
+    private static final String SELECT_COLUMNS = "SELECT " + COLUMNS + " FROM products";
+    private static final Query FIND_BY_ID = new Query("findById", SELECT_COLUMNS + " WHERE id = $1");
+    // Every write records its change event in the outbox as part of the same statement
+    private static final Query INSERT = new Query("create", OutboxRepository.recording(OutboxRepository.PRODUCT, "created",
+        "INSERT INTO products (name, category, price, stock, description) VALUES ($1, $2, $3, $4, $5)", COLUMNS));
+    private static final Query INSERT_BATCH = new Query("createBatch", OutboxRepository.recording(OutboxRepository.PRODUCT, "created",
+        "INSERT INTO products (name, category, price, stock, description) VALUES ($1, $2, $3, $4, $5)"));
+    private static final Query INSERT_UNNEST = new Query("createUnnest", OutboxRepository.recording(OutboxRepository.PRODUCT, "created",
+        "INSERT INTO products (name, category, price, stock, description) "
+            + "SELECT * FROM unnest($1::text[], $2::text[], $3::float8[], $4::int[], $5::text[])"));
+    private static final Query UPDATE = new Query("update", OutboxRepository.recording(OutboxRepository.PRODUCT, "updated",
+        "UPDATE products SET name = $1, category = $2, price = $3, stock = $4, description = $5 WHERE id = $6", COLUMNS));
+    private static final Query DELETE = new Query("delete", OutboxRepository.recording(OutboxRepository.PRODUCT, "deleted",
+        "DELETE FROM products WHERE id = $1"));
+
+    // The first two are what writePage builds for unfiltered pages
+    static final List<Query> QUERIES = List.of(
+        new Query("writePage", SELECT_COLUMNS + " ORDER BY id LIMIT $1"),
+        new Query("writePage", SELECT_COLUMNS + " WHERE id > $1 ORDER BY id LIMIT $2"),
+        FIND_BY_ID, INSERT, INSERT_BATCH, INSERT_UNNEST, UPDATE, DELETE);
+
+    private final MeteredPool db;
+    private final SingleFlight<Integer, Product> byId;
 
     public ProductRepository(PgPool db) {
-        this.db = db;
+        this(db, ReplicaSet.NONE);
     }
 
-    public Future<List<Product>> findAll() {
-        return db.query("SELECT id, name, category, price, stock, description FROM products ORDER BY id")
-            .execute()
+    public ProductRepository(PgPool db, ReplicaSet replicas) {
+        this.db = new MeteredPool(db, replicas, "ProductRepository");
+        this.byId = new SingleFlight<>("ProductRepository", "findById", TableVersion.PRODUCTS);
+    }
+
+    /**
+     * Writes one keyset page of products matching {@code filter} as the list response body
+     * ({@code {"items":[...],"nextCursor":...}}) into {@code out}, encoding straight from the rows.
+     */
+    public Future<Void> writePage(ProductFilter filter, PageCursor after, int limit, ByteBuf out) {
+        Where where = filtered(filter);
+        // products has no created_at column, so the keyset is the id alone
+        if (after != null) {
+            where.and("id > " + where.bind(after.getId()));
+        }
+        String sql = SELECT_COLUMNS + where.sql() + " ORDER BY id LIMIT " + where.bind(limit + 1);
+        return db.read(new Query("writePage", sql, ConcurrencyLimiter.Priority.LOW, where.cacheable()), where.params(), TableVersion.PRODUCTS)
             .map(rows -> {
-                List<Product> products = new ArrayList<>();
-                for (Row row : rows) {
-                    products.add(mapRow(row));
-                }
-                return products;
+                JsonRows.writePage(out, rows, limit, ProductRepository::writeJson,
+                    last -> new PageCursor(null, last.getInteger("id")).encode());
+                return null;
             });
     }
 
+    public Future<Void> streamAll(ProductFilter filter, WriteStream<Buffer> out) {
+        Where where = filtered(filter);
+        return RowStreams.writeJsonArray(db, "streamAll", TableVersion.PRODUCTS, SELECT_COLUMNS + where.sql() + " ORDER BY id", where.params(),
+            ProductRepository::writeJson, out);
+    }
+
+    /**
+     * Name search is case-insensitive, anywhere in the name or at its start (see {@link Where});
+     * the other criteria use plain btree indexes.
+     */
+    private static Where filtered(ProductFilter filter) {
+        Where where = new Where();
+        if (filter.getQuery() != null) {
+            where.and(where.contains("name", filter.getQuery()));
+        }
+        if (filter.getQueryPrefix() != null) {
+            where.and(where.startsWith("name", filter.getQueryPrefix()));
+        }
+        if (filter.getCategory() != null) {
+            where.and("category = " + where.bind(filter.getCategory()));
+        }
+        if (filter.getMinPrice() != null) {
+            where.and("price >= " + where.bind(filter.getMinPrice()) + "::numeric");
+        }
+        if (filter.getMaxPrice() != null) {
+            where.and("price <= " + where.bind(filter.getMaxPrice()) + "::numeric");
+        }
+        if (filter.getInStock() != null) {
+            where.and(filter.getInStock() ? "stock > 0" : "stock = 0");
+        }
+        return where;
+    }
+
     public Future<Product> findById(Integer id) {
-        return db.preparedQuery("SELECT id, name, category, price, stock, description FROM products WHERE id = $1")
-            .execute(Tuple.of(id))
+        return byId.run(id, () -> db.read(FIND_BY_ID, Tuple.of(id), TableVersion.PRODUCTS)
             .map(rows -> {
                 if (rows.iterator().hasNext()) {
                     return mapRow(rows.iterator().next());
                 }
                 return null;
-            });
+            }));
     }
 
     public Future<Product> create(Product product) {
-        return db.preparedQuery(
-            "INSERT INTO products (name, category, price, stock, description) VALUES ($1, $2, $3, $4, $5) RETURNING id, name, category, price, stock, description")
-            .execute(Tuple.of(product.getName(), product.getCategory(), product.getPrice(), 
-                product.getStock(), product.getDescription()))
-            .map(rows -> mapRow(rows.iterator().next()));
+        return db.execute(INSERT, Tuple.of(product.getName(), product.getCategory(), product.getPrice(), 
+                product.getStock() != null ? product.getStock() : 0, product.getDescription()))
+            .map(rows -> mapRow(rows.iterator().next()))
+            .onComplete(ar -> TableVersion.PRODUCTS.bump());
+    }
+
+    /**
+     * Inserts all rows with one pipelined {@code executeBatch}; fails as a whole if any row fails.
+     */
+    public Future<Void> createBatch(List<Product> products) {
+        List<Tuple> batch = new ArrayList<>(products.size());
+        for (Product product : products) {
+            batch.add(Tuple.of(product.getName(), product.getCategory(), product.getPrice(),
+                product.getStock() != null ? product.getStock() : 0, product.getDescription()));
+        }
+        return db.executeBatch(INSERT_BATCH, batch)
+            .onComplete(ar -> TableVersion.PRODUCTS.bump())
+            .mapEmpty();
+    }
+
+    /**
+     * Inserts all rows with a single statement over column arrays, for large imports.
+     * Fails as a whole if any row fails.
+     */
+    public Future<Void> createUnnest(List<Product> products) {
+        int size = products.size();
+        String[] names = new String[size];
+        String[] categories = new String[size];
+        Double[] prices = new Double[size];
+        Integer[] stocks = new Integer[size];
+        String[] descriptions = new String[size];
+        for (int i = 0; i < size; i++) {
+            Product product = products.get(i);
+            names[i] = product.getName();
+            categories[i] = product.getCategory();
+            prices[i] = product.getPrice();
+            stocks[i] = product.getStock() != null ? product.getStock() : 0;
+            descriptions[i] = product.getDescription();
+        }
+        return db.execute(INSERT_UNNEST, Tuple.tuple()
+                .addArrayOfString(names)
+                .addArrayOfString(categories)
+                .addArrayOfDouble(prices)
+                .addArrayOfInteger(stocks)
+                .addArrayOfString(descriptions))
+            .onComplete(ar -> TableVersion.PRODUCTS.bump())
+            .mapEmpty();
     }
 
     public Future<Product> update(Integer id, Product product) {
-        return db.preparedQuery(
-            "UPDATE products SET name = $1, category = $2, price = $3, stock = $4, description = $5 WHERE id = $6 RETURNING id, name, category, price, stock, description")
-            .execute(Tuple.of(product.getName(), product.getCategory(), product.getPrice(), 
+        return db.execute(UPDATE, Tuple.of(product.getName(), product.getCategory(), product.getPrice(), 
                 product.getStock(), product.getDescription(), id))
             .map(rows -> {
                 if (rows.iterator().hasNext()) {
                     return mapRow(rows.iterator().next());
                 }
                 return null;
-            });
+            })
+            .onComplete(ar -> TableVersion.PRODUCTS.bump());
     }
 
     public Future<Void> delete(Integer id) {
-        return db.preparedQuery("DELETE FROM products WHERE id = $1")
-            .execute(Tuple.of(id))
+        return db.execute(DELETE, Tuple.of(id))
+            .onComplete(ar -> TableVersion.PRODUCTS.bump())
             .map(rows -> null);
     }
 
-    private Product mapRow(Row row) {
+    /**
+     * Writes a row selected with {@link #SELECT_COLUMNS} exactly as {@code ProductRoutes.toJson} would.
+     */
+    public static void writeJson(Row row, JsonGenerator json) throws IOException {
+        json.writeStartObject();
+        JsonRows.writeIntegerField(json, "id", row.getInteger("id"));
+        json.writeStringField("name", row.getString("name"));
+        json.writeStringField("category", row.getString("category"));
+        JsonRows.writeDoubleField(json, "price", row.getDouble("price"));
+        JsonRows.writeIntegerField(json, "stock", row.getInteger("stock"));
+        json.writeStringField("description", row.getString("description"));
+        json.writeEndObject();
+    }
+
+    public static Product mapRow(Row row) {
         return new Product(
             row.getInteger("id"),
             row.getString("name"),
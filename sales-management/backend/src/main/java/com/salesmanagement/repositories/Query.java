@@ -0,0 +1,50 @@
+package com.salesmanagement.repositories;
+
+import io.vertx.core.Future;
+import io.vertx.sqlclient.PreparedQuery;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.SqlConnection;
+import io.vertx.sqlclient.Tuple;
+
+/**
+ * A fixed repository statement, held in a constant and reused for every call. The SQL is the
+ * key of each connection's prepared-statement cache; {@code method} names it in the
+ * {@code db.query} metrics; {@code priority} orders it in the {@link ConcurrencyLimiter} queue.
+ * Statements built per call whose plan should follow their parameters are marked not
+ * {@code cached}; they are prepared for the one execution and closed again.
+ */
+final class Query {
+    final String method;
+    final String sql;
+    final ConcurrencyLimiter.Priority priority;
+    final boolean cached;
+
+    Query(String method, String sql) {
+        this(method, sql, ConcurrencyLimiter.Priority.NORMAL);
+    }
+
+    Query(String method, String sql, ConcurrencyLimiter.Priority priority) {
+        this(method, sql, priority, true);
+    }
+
+    Query(String method, String sql, ConcurrencyLimiter.Priority priority, boolean cached) {
+        this.method = method;
+        this.sql = sql;
+        this.priority = priority;
+        this.cached = cached;
+    }
+
+    PreparedQuery<RowSet<Row>> on(SqlConnection conn) {
+        return conn.preparedQuery(sql);
+    }
+
+    Future<RowSet<Row>> execute(SqlConnection conn, Tuple params) {
+        if (cached) {
+            return on(conn).execute(params);
+        }
+        // A statement prepared this way stays out of the connection's statement cache
+        return conn.prepare(sql).compose(statement -> statement.query().execute(params)
+            .eventually(() -> statement.close()));
+    }
+}
@@ -0,0 +1,117 @@
+package com.salesmanagement.repositories;
+
+import com.salesmanagement.config.DatabaseConfig;
+import com.salesmanagement.config.MetricsConfig;
+import io.micrometer.core.instrument.Gauge;
+import io.vertx.core.Future;
+import io.vertx.pgclient.PgPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Function;
+
+/**
+ * Picks where a repository read runs: the healthy replica with the fewest reads in flight
+ * (round-robin among ties), or the primary. Health and load are tracked per replica for the whole
+ * process, indexed like {@code DB_REPLICA_HOSTS}; each verticle instance holds its own pool handles.
+ *
+ * <p>A replica counts as healthy while the periodic {@link #check} reaches it and its replay lag
+ * is under {@code DB_REPLICA_MAX_LAG_MS}. Reads of a table this process wrote within that lag plus
+ * one check interval go to the primary, so a client never reads back older data than it wrote
+ * (and never caches it under the new ETag).
+ */
+public final class ReplicaSet {
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaSet.class);
+    public static final long CHECK_INTERVAL_MS = Long.parseLong(System.getenv().getOrDefault("DB_REPLICA_CHECK_INTERVAL_MS", "1000"));
+    private static final long MAX_LAG_MS = Long.parseLong(System.getenv().getOrDefault("DB_REPLICA_MAX_LAG_MS", "5000"));
+    private static final String LAG_SQL = "SELECT CASE WHEN NOT pg_is_in_recovery() OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0"
+        + " ELSE (EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000)::BIGINT END AS lag_ms";
+
+    private static final List<String> HOSTS = DatabaseConfig.replicaHosts();
+    // Replicas start unhealthy, so nothing is routed to them before the first check passes
+    private static final AtomicIntegerArray HEALTHY = new AtomicIntegerArray(HOSTS.size());
+    private static final AtomicIntegerArray IN_FLIGHT = new AtomicIntegerArray(HOSTS.size());
+    private static final AtomicInteger NEXT = new AtomicInteger();
+
+    public static final ReplicaSet NONE = new ReplicaSet(List.of());
+
+    static {
+        for (int i = 0; i < HOSTS.size(); i++) {
+            int replica = i;
+            Gauge.builder("db.replica.healthy", () -> HEALTHY.get(replica))
+                .description("1 while the replica receives reads")
+                .tag("replica", HOSTS.get(i))
+                .register(MetricsConfig.registry());
+            Gauge.builder("db.replica.in.flight", () -> IN_FLIGHT.get(replica))
+                .description("Reads currently running on the replica")
+                .tag("replica", HOSTS.get(i))
+                .register(MetricsConfig.registry());
+        }
+    }
+
+    private final List<PgPool> pools;
+
+    /**
+     * @param pools this instance's handles from {@code DatabaseConfig.createReplicaPools}
+     */
+    public ReplicaSet(List<PgPool> pools) {
+        this.pools = pools;
+    }
+
+    /**
+     * The replica to read {@code table} from, or -1 for the primary.
+     */
+    int pick(TableVersion table) {
+        if (pools.isEmpty() || (table != null && table.writtenWithin(MAX_LAG_MS + CHECK_INTERVAL_MS))) {
+            return -1;
+        }
+        int start = Math.floorMod(NEXT.getAndIncrement(), pools.size());
+        int best = -1;
+        for (int i = 0; i < pools.size(); i++) {
+            int replica = (start + i) % pools.size();
+            if (HEALTHY.get(replica) == 1 && (best < 0 || IN_FLIGHT.get(replica) < IN_FLIGHT.get(best))) {
+                best = replica;
+            }
+        }
+        return best;
+    }
+
+    <T> Future<T> run(int replica, Function<PgPool, Future<T>> call) {
+        IN_FLIGHT.incrementAndGet(replica);
+        return call.apply(pools.get(replica))
+            .onComplete(ar -> IN_FLIGHT.decrementAndGet(replica));
+    }
+
+    /**
+     * Takes a replica out of rotation after a read failed to reach it, without waiting for the
+     * next check; the check puts it back once it answers again.
+     */
+    static void markDown(int replica, Throwable cause) {
+        if (HEALTHY.getAndSet(replica, 0) == 1) {
+            logger.warn("Replica {} failed a read, routing to the primary until it recovers", HOSTS.get(replica), cause);
+        }
+    }
+
+    /**
+     * Probes one replica and updates its health. Meant to run periodically from a single
+     * place in the process.
+     */
+    public static Future<Void> check(int replica, PgPool pool) {
+        return pool.query(LAG_SQL).execute()
+            .map(rows -> rows.iterator().next().getLong("lag_ms"))
+            .transform(ar -> {
+                boolean healthy = ar.succeeded() && ar.result() <= MAX_LAG_MS;
+                boolean wasHealthy = HEALTHY.getAndSet(replica, healthy ? 1 : 0) == 1;
+                if (healthy && !wasHealthy) {
+                    logger.info("Replica {} is healthy, routing reads to it", HOSTS.get(replica));
+                } else if (!healthy && wasHealthy) {
+                    logger.warn("Replica {} is unhealthy ({}), routing to the primary", HOSTS.get(replica),
+                        ar.succeeded() ? "lag " + ar.result() + " ms" : ar.cause().getMessage());
+                }
+                return Future.succeededFuture();
+            });
+    }
+}
@@ -0,0 +1,152 @@
+package com.salesmanagement.repositories;
+
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.Tuple;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public class ReportRepository {
+    private static final Query REVENUE_BY_DAY = new Query("revenueByDay",
+        "SELECT day, order_count, revenue FROM sales_daily WHERE day BETWEEN $1 AND $2 ORDER BY day");
+    private static final Query TOP_PRODUCTS = new Query("topProducts",
+        "SELECT product_id, product_name, quantity, revenue FROM sales_by_product WHERE quantity > 0 ORDER BY revenue DESC LIMIT $1");
+    private static final Query TOP_CUSTOMERS = new Query("topCustomers",
+        "SELECT customer_id, customer_name, order_count, revenue FROM sales_by_customer WHERE order_count > 0 ORDER BY revenue DESC LIMIT $1");
+    private static final Query CATEGORY_MIX = new Query("categoryMix",
+        "SELECT category, quantity, revenue, revenue / NULLIF(SUM(revenue) OVER (), 0) AS share FROM sales_by_category WHERE quantity > 0 ORDER BY revenue DESC");
+    private static final Query APPLY_DELTAS = new Query("applyDeltas",
+        "WITH batch AS ("
+            + " DELETE FROM sales_rollup_deltas WHERE id IN ("
+            + "  SELECT id FROM sales_rollup_deltas ORDER BY id LIMIT $1 FOR UPDATE SKIP LOCKED)"
+            + " RETURNING *"
+            + "), daily AS ("
+            + " INSERT INTO sales_daily (day, order_count, revenue)"
+            + " SELECT day, SUM(orders), SUM(revenue) FROM batch WHERE product_id IS NULL GROUP BY day"
+            + " ON CONFLICT (day) DO UPDATE SET"
+            + "  order_count = sales_daily.order_count + EXCLUDED.order_count,"
+            + "  revenue = sales_daily.revenue + EXCLUDED.revenue"
+            + "), customers AS ("
+            + " INSERT INTO sales_by_customer (customer_id, customer_name, order_count, revenue)"
+            + " SELECT b.customer_id, COALESCE(MAX(c.name), " + latestName("b.customer_name") + "), SUM(b.orders), SUM(b.revenue)"
+            + " FROM batch b LEFT JOIN customers c ON c.id = b.customer_id WHERE b.product_id IS NULL GROUP BY b.customer_id"
+            + " ON CONFLICT (customer_id) DO UPDATE SET"
+            + "  customer_name = COALESCE((SELECT name FROM customers WHERE id = EXCLUDED.customer_id), sales_by_customer.customer_name),"
+            + "  order_count = sales_by_customer.order_count + EXCLUDED.order_count,"
+            + "  revenue = sales_by_customer.revenue + EXCLUDED.revenue"
+            + "), products AS ("
+            + " INSERT INTO sales_by_product (product_id, product_name, quantity, revenue)"
+            + " SELECT b.product_id, COALESCE(MAX(p.name), " + latestName("b.product_name") + "), SUM(b.quantity), SUM(b.revenue)"
+            + " FROM batch b LEFT JOIN products p ON p.id = b.product_id WHERE b.product_id IS NOT NULL GROUP BY b.product_id"
+            + " ON CONFLICT (product_id) DO UPDATE SET"
+            + "  product_name = COALESCE((SELECT name FROM products WHERE id = EXCLUDED.product_id), sales_by_product.product_name),"
+            + "  quantity = sales_by_product.quantity + EXCLUDED.quantity,"
+            + "  revenue = sales_by_product.revenue + EXCLUDED.revenue"
+            + "), categories AS ("
+            + " INSERT INTO sales_by_category (category, quantity, revenue)"
+            + " SELECT COALESCE(category, 'Uncategorized'), SUM(quantity), SUM(revenue) FROM batch WHERE product_id IS NOT NULL"
+            + " GROUP BY COALESCE(category, 'Uncategorized')"
+            + " ON CONFLICT (category) DO UPDATE SET"
+            + "  quantity = sales_by_category.quantity + EXCLUDED.quantity,"
+            + "  revenue = sales_by_category.revenue + EXCLUDED.revenue"
+            + ")"
+            + " SELECT COUNT(*) AS applied FROM batch");
+
+    static final List<Query> QUERIES = List.of(REVENUE_BY_DAY, TOP_PRODUCTS, TOP_CUSTOMERS, CATEGORY_MIX, APPLY_DELTAS);
+
+    private final MeteredPool db;
+
+    public ReportRepository(PgPool db) {
+        this(db, ReplicaSet.NONE);
+    }
+
+    public ReportRepository(PgPool db, ReplicaSet replicas) {
+        this.db = new MeteredPool(db, replicas, "ReportRepository");
+    }
+
+    /**
+     * For a rollup row whose customer or product no longer exists: the name on the batch's latest
+     * positive delta, else on any of its deltas. A delete delta carries the name stored on the
+     * old order, which may predate a rename.
+     */
+    private static String latestName(String column) {
+        return "COALESCE((array_agg(" + column + " ORDER BY b.id DESC) FILTER (WHERE b.quantity > 0 OR b.orders > 0))[1], MAX(" + column + "))";
+    }
+
+    public Future<JsonArray> revenueByDay(LocalDate from, LocalDate to) {
+        // The rollups already trail orders by the refresh interval, so reports read from any
+        // healthy replica without a read-after-write check
+        return db.read(REVENUE_BY_DAY, Tuple.of(from, to), null)
+            .map(rows -> {
+                JsonArray result = new JsonArray();
+                for (Row row : rows) {
+                    result.add(new JsonObject()
+                        .put("day", row.getLocalDate("day").toString())
+                        .put("orderCount", row.getInteger("order_count"))
+                        .put("revenue", row.getDouble("revenue")));
+                }
+                return result;
+            });
+    }
+
+    public Future<JsonArray> topProducts(int limit) {
+        return db.read(TOP_PRODUCTS, Tuple.of(limit), null)
+            .map(rows -> {
+                JsonArray result = new JsonArray();
+                for (Row row : rows) {
+                    result.add(new JsonObject()
+                        .put("productId", row.getInteger("product_id"))
+                        .put("productName", row.getString("product_name"))
+                        .put("quantity", row.getLong("quantity"))
+                        .put("revenue", row.getDouble("revenue")));
+                }
+                return result;
+            });
+    }
+
+    public Future<JsonArray> topCustomers(int limit) {
+        return db.read(TOP_CUSTOMERS, Tuple.of(limit), null)
+            .map(rows -> {
+                JsonArray result = new JsonArray();
+                for (Row row : rows) {
+                    result.add(new JsonObject()
+                        .put("customerId", row.getInteger("customer_id"))
+                        .put("customerName", row.getString("customer_name"))
+                        .put("orderCount", row.getInteger("order_count"))
+                        .put("revenue", row.getDouble("revenue")));
+                }
+                return result;
+            });
+    }
+
+    public Future<JsonArray> categoryMix() {
+        return db.read(CATEGORY_MIX, Tuple.tuple(), null)
+            .map(rows -> {
+                JsonArray result = new JsonArray();
+                for (Row row : rows) {
+                    result.add(new JsonObject()
+                        .put("category", row.getString("category"))
+                        .put("quantity", row.getLong("quantity"))
+                        .put("revenue", row.getDouble("revenue"))
+                        .put("share", row.getDouble("share")));
+                }
+                return result;
+            });
+    }
+
+    /**
+     * Folds up to {@code batchSize} queued deltas into the rollup tables and deletes them, all in
+     * one statement. SKIP LOCKED lets several refreshers run without applying a delta twice.
+     * Customer and product names are taken from the current rows, so a rollup follows renames.
+     *
+     * @return the number of deltas applied
+     */
+    public Future<Integer> applyDeltas(int batchSize) {
+        return db.execute(APPLY_DELTAS, Tuple.of(batchSize))
+            .map(rows -> rows.iterator().next().getInteger("applied"));
+    }
+}
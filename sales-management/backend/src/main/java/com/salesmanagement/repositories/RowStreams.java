@@ -0,0 +1,86 @@
+package com.salesmanagement.repositories;
+
+import io.netty.buffer.ByteBuf;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.buffer.impl.BufferImpl;
+import io.vertx.core.streams.WriteStream;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowStream;
+import io.vertx.sqlclient.Tuple;
+
+/**
+ * Streams a query result as a JSON array into a {@link WriteStream}, fetching rows through a
+ * server-side cursor so only one fetch batch is held in memory at a time. Rows are encoded into a
+ * pooled buffer that goes out once it holds {@link #FLUSH_BYTES}, so a write carries many rows and
+ * no per-row buffer is allocated.
+ */
+final class RowStreams {
+    private static final int FETCH_SIZE = 500;
+    private static final int FLUSH_BYTES = 16 * 1024;
+
+    private RowStreams() {
+    }
+
+    /**
+     * Writes {@code [row, row, ...]} to {@code out}. Reading pauses whenever the write queue is
+     * full and resumes on drain. The returned future completes after the closing bracket is written;
+     * the caller is responsible for ending {@code out}.
+     */
+    static Future<Void> writeJsonArray(MeteredPool db, String method, TableVersion table, String sql, Tuple params,
+                                       JsonRows.RowWriter writer, WriteStream<Buffer> out) {
+        // Postgres cursors only live inside a transaction; full exports yield to everything else
+        return db.withReadTransaction(method, ConcurrencyLimiter.Priority.LOW, table, conn -> conn.prepare(sql).compose(statement -> {
+            Promise<Void> done = Promise.promise();
+            RowStream<Row> stream = statement.createStream(FETCH_SIZE, params);
+            boolean[] first = {true};
+            ByteBuf[] pending = {JsonRows.pooledBuffer().writeByte('[')};
+
+            out.exceptionHandler(err -> {
+                stream.close();
+                done.tryFail(err);
+            });
+            stream.exceptionHandler(done::tryFail);
+            stream.endHandler(v -> {
+                if (pending[0] == null) {
+                    pending[0] = JsonRows.pooledBuffer();
+                }
+                pending[0].writeByte(']');
+                write(out, pending[0]);
+                pending[0] = null;
+                done.tryComplete();
+            });
+
+            stream.handler(row -> {
+                if (pending[0] == null) {
+                    pending[0] = JsonRows.pooledBuffer();
+                }
+                JsonRows.writeElement(pending[0], row, writer, first[0]);
+                first[0] = false;
+                if (pending[0].readableBytes() < FLUSH_BYTES) {
+                    return;
+                }
+                write(out, pending[0]);
+                pending[0] = null;
+                if (out.writeQueueFull()) {
+                    stream.pause();
+                    out.drainHandler(drained -> stream.resume());
+                }
+            });
+            return done.future().eventually(() -> {
+                // Rows encoded before a failure never went out
+                if (pending[0] != null) {
+                    pending[0].release();
+                    pending[0] = null;
+                }
+                return statement.close();
+            });
+        }));
+    }
+
+    // The pooled buffer goes back to the pool once the write has been flushed
+    private static void write(WriteStream<Buffer> out, ByteBuf chunk) {
+        out.write(BufferImpl.buffer(chunk)).onComplete(ar -> chunk.release());
+    }
+}
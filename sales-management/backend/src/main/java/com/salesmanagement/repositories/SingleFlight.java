@@ -0,0 +1,59 @@
+package com.salesmanagement.repositories;
+
+import com.salesmanagement.config.MetricsConfig;
+import io.micrometer.core.instrument.Counter;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent lookups of the same key into one query: the first caller runs it and
+ * everyone asking for that key before it completes gets the same result. Callers that arrive
+ * after a write to {@code table} start a fresh query rather than join one that may predate it.
+ * Joined lookups are counted in {@code db.query.coalesced}, i.e. the queries saved.
+ * Callers share the result object, so they must not modify it.
+ *
+ * <p>Each repository instance, and so each event loop, has its own set of flights.
+ */
+final class SingleFlight<K, V> {
+    private final TableVersion table;
+    private final Counter coalesced;
+    private final Map<K, Flight<V>> flights = new ConcurrentHashMap<>();
+
+    SingleFlight(String repository, String method, TableVersion table) {
+        this.table = table;
+        this.coalesced = Counter.builder("db.query.coalesced")
+            .description("Lookups answered by joining an identical query already in flight")
+            .tag("repository", repository)
+            .tag("method", method)
+            .register(MetricsConfig.registry());
+    }
+
+    Future<V> run(K key, Supplier<Future<V>> query) {
+        long version = table.current();
+        Flight<V> started = new Flight<>(version);
+        Flight<V> flight = flights.compute(key, (k, current) -> current != null && current.version >= version ? current : started);
+        if (flight != started) {
+            coalesced.increment();
+            return flight.result.future();
+        }
+        query.get().onComplete(ar -> {
+            // Leave before completing, so callers reacting to the result start their own flight
+            flights.remove(key, started);
+            started.result.handle(ar);
+        });
+        return started.result.future();
+    }
+
+    private static final class Flight<V> {
+        final long version;
+        final Promise<V> result = Promise.promise();
+
+        Flight(long version) {
+            this.version = version;
+        }
+    }
+}
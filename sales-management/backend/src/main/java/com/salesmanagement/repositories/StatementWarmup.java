@@ -0,0 +1,56 @@
+package com.salesmanagement.repositories;
+
+import io.vertx.core.Future;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.SqlConnection;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Opens every pooled connection up front and has its server process parse the repositories' fixed
+ * queries, so the first requests after startup neither connect nor load the catalog entries those
+ * queries touch. Parsing also checks every statement against the live schema, so drift fails
+ * startup instead of the first request that hits it.
+ */
+public final class StatementWarmup {
+    private StatementWarmup() {
+    }
+
+    private static List<Query> queries() {
+        List<Query> queries = new ArrayList<>();
+        queries.addAll(ProductRepository.QUERIES);
+        queries.addAll(CustomerRepository.QUERIES);
+        queries.addAll(OrderRepository.QUERIES);
+        queries.addAll(UserRepository.QUERIES);
+        queries.addAll(ReportRepository.QUERIES);
+        queries.addAll(OutboxRepository.QUERIES);
+        queries.addAll(CustomerSyncRepository.QUERIES);
+        return queries;
+    }
+
+    /**
+     * Borrows {@code connections} connections at once, so the pool opens that many distinct ones,
+     * and prepares every statement on each. Fails if any connection or statement does. Must run
+     * before the pool sees other traffic.
+     */
+    public static Future<Void> warm(PgPool pool, int connections) {
+        List<Query> queries = queries();
+        List<Future<Void>> warmed = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++) {
+            warmed.add(pool.getConnection().compose(conn -> prepareAll(conn, queries)
+                .eventually(() -> conn.close())));
+        }
+        return Future.all(warmed).mapEmpty();
+    }
+
+    private static Future<Void> prepareAll(SqlConnection conn, List<Query> queries) {
+        List<Future<Void>> prepared = new ArrayList<>(queries.size());
+        for (Query query : queries) {
+            prepared.add(conn.prepare(query.sql)
+                .compose(statement -> statement.close())
+                .recover(err -> Future.failedFuture(new IllegalStateException("Could not prepare " + query.method + ": " + query.sql, err))));
+        }
+        return Future.all(prepared).mapEmpty();
+    }
+}
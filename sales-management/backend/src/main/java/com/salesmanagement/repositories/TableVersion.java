@@ -0,0 +1,58 @@
+package com.salesmanagement.repositories;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process change counter for a table, bumped whenever a write through this process completes
+ * (failed writes too, in case the commit went through but its reply was lost). Readers derive
+ * ETags from it, so a conditional GET can be answered without a query. The time of the last bump
+ * also tells {@link ReplicaSet} when a replica may not have a write yet. Like the product cache,
+ * it only sees writes made by this process, so the API must be the only writer to the database.
+ */
+public final class TableVersion {
+    public static final TableVersion PRODUCTS = new TableVersion("products");
+    public static final TableVersion CUSTOMERS = new TableVersion("customers");
+    public static final TableVersion ORDERS = new TableVersion("orders");
+
+    // Distinguishes processes, so a restart (counter back at zero) never reuses an old ETag
+    private static final String EPOCH = Long.toString(System.currentTimeMillis(), 36);
+
+    private final String table;
+    private final AtomicLong version = new AtomicLong();
+    private volatile long lastWriteNanos = System.nanoTime() - TimeUnit.DAYS.toNanos(1);
+
+    private TableVersion(String table) {
+        this.table = table;
+    }
+
+    public long current() {
+        return version.get();
+    }
+
+    void bump() {
+        lastWriteNanos = System.nanoTime();
+        version.incrementAndGet();
+    }
+
+    boolean writtenWithin(long millis) {
+        return System.nanoTime() - lastWriteNanos < TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * Whichever of {@code a} and {@code b} was written last, for reads that join both.
+     */
+    static TableVersion latest(TableVersion a, TableVersion b) {
+        return a.lastWriteNanos - b.lastWriteNanos >= 0 ? a : b;
+    }
+
+    /**
+     * Weak ETag for any representation of this table at the current version. It is compared
+     * per URL, so the same tag can safely stand for a list page and for a single row. Weak because
+     * the gzip, deflate, brotli and identity encodings of a response all carry it, and a strong
+     * tag must differ per content coding.
+     */
+    public String etag() {
+        return "W/\"" + table + "-" + EPOCH + "-" + version.get() + "\"";
+    }
+}
@@ -8,17 +8,26 @@ import io.vertx.sqlclient.RowSet;
 import io.vertx.sqlclient.Tuple;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 public class UserRepository {
-    private final PgPool db;
+    private static final String SELECT_COLUMNS = "SELECT id, name, email, password_hash, created_at FROM users";
+    private static final Query FIND_BY_EMAIL = new Query("findByEmail", SELECT_COLUMNS + " WHERE email = $1");
+    private static final Query FIND_BY_ID = new Query("findById", SELECT_COLUMNS + " WHERE id = $1");
+    private static final Query INSERT = new Query("create",
+        "INSERT INTO users (name, email, password_hash, created_at) VALUES ($1, $2, $3, $4) RETURNING id, name, email, password_hash, created_at");
+    private static final Query UPDATE_PASSWORD_HASH = new Query("updatePasswordHash", "UPDATE users SET password_hash = $1 WHERE id = $2");
+
+    static final List<Query> QUERIES = List.of(FIND_BY_EMAIL, FIND_BY_ID, INSERT, UPDATE_PASSWORD_HASH);
+
+    private final MeteredPool db;
 
     public UserRepository(PgPool db) {
-        this.db = db;
+        this.db = new MeteredPool(db, "UserRepository");
     }
 
     public Future<User> findByEmail(String email) {
-        return db.preparedQuery("SELECT id, name, email, password_hash, created_at FROM users WHERE email = $1")
-            .execute(Tuple.of(email))
+        return db.execute(FIND_BY_EMAIL, Tuple.of(email))
             .map(rows -> {
                 if (rows.iterator().hasNext()) {
                     return mapRow(rows.iterator().next());
@@ -28,8 +37,7 @@ public class UserRepository {
     }
 
     public Future<User> findById(Integer id) {
-        return db.preparedQuery("SELECT id, name, email, password_hash, created_at FROM users WHERE id = $1")
-            .execute(Tuple.of(id))
+        return db.execute(FIND_BY_ID, Tuple.of(id))
             .map(rows -> {
                 if (rows.iterator().hasNext()) {
                     return mapRow(rows.iterator().next());
@@ -39,12 +47,15 @@ public class UserRepository {
     }
 
     public Future<User> create(String name, String email, String passwordHash) {
-        return db.preparedQuery(
-            "INSERT INTO users (name, email, password_hash, created_at) VALUES ($1, $2, $3, $4) RETURNING id, name, email, password_hash, created_at")
-            .execute(Tuple.of(name, email, passwordHash, LocalDateTime.now()))
+        return db.execute(INSERT, Tuple.of(name, email, passwordHash, LocalDateTime.now()))
             .map(rows -> mapRow(rows.iterator().next()));
     }
 
+    public Future<Void> updatePasswordHash(Integer id, String passwordHash) {
+        return db.execute(UPDATE_PASSWORD_HASH, Tuple.of(passwordHash, id))
+            .map(rows -> null);
+    }
+
     private User mapRow(Row row) {
         return new User(
             row.getInteger("id"),
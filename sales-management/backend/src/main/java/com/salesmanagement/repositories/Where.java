@@ -0,0 +1,69 @@
+package com.salesmanagement.repositories;
+
+import io.vertx.sqlclient.Tuple;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds a WHERE clause from optional conditions, numbering bind parameters as they are added
+ * so user input never ends up in the SQL text.
+ */
+final class Where {
+    private final List<String> conditions = new ArrayList<>();
+    private final Tuple params = Tuple.tuple();
+    private boolean searches;
+
+    /**
+     * Binds {@code value} and returns its placeholder ({@code $n}) for use in a condition.
+     */
+    String bind(Object value) {
+        params.addValue(value);
+        return "$" + params.size();
+    }
+
+    Where and(String condition) {
+        conditions.add(condition);
+        return this;
+    }
+
+    String sql() {
+        return conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+    }
+
+    Tuple params() {
+        return params;
+    }
+
+    /**
+     * False once a text search is added. A cached statement soon runs on a generic plan, which
+     * can't turn a bound LIKE/ILIKE pattern into an index range and assumes the same match rate
+     * for every term, so a rare term walks the whole primary key. Uncached, each search is
+     * planned with its actual pattern.
+     */
+    boolean cacheable() {
+        return !searches;
+    }
+
+    /**
+     * Case-insensitive match of {@code term} anywhere in {@code column}, served by the trigram
+     * indexes from migration 006. {@code term} must be at least a trigram long.
+     */
+    String contains(String column, String term) {
+        searches = true;
+        return column + " ILIKE " + bind("%" + escape(term) + "%");
+    }
+
+    /**
+     * Case-insensitive match of {@code term} at the start of {@code column}, served by the
+     * {@code lower(...) text_pattern_ops} indexes from migration 010.
+     */
+    String startsWith(String column, String term) {
+        searches = true;
+        return "lower(" + column + ") LIKE lower(" + bind(escape(term) + "%") + ")";
+    }
+
+    private static String escape(String term) {
+        return term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
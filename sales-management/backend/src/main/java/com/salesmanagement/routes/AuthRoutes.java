@@ -2,8 +2,9 @@ package com.salesmanagement.routes;
 
 import com.salesmanagement.repositories.UserRepository;
 import com.salesmanagement.utils.AuthUtils;
+import com.salesmanagement.utils.PasswordService;
+import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonObject;
-import io.vertx.ext.auth.jwt.JWTAuth;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.pgclient.PgPool;
@@ -13,11 +14,11 @@ import org.slf4j.LoggerFactory;
 public class AuthRoutes {
     private static final Logger logger = LoggerFactory.getLogger(AuthRoutes.class);
     private final UserRepository userRepository;
-    private final JWTAuth jwtAuth;
+    private final PasswordService passwordService;
 
-    public AuthRoutes(Router router, PgPool db) {
+    public AuthRoutes(Vertx vertx, Router router, PgPool db) {
         this.userRepository = new UserRepository(db);
-        this.jwtAuth = AuthUtils.createJwtAuth();
+        this.passwordService = new PasswordService(vertx);
 
         router.post("/api/auth/signup").handler(this::signup);
         router.post("/api/auth/login").handler(this::login);
@@ -58,9 +59,9 @@ public class AuthRoutes {
                 if (existingUser != null) {
                     return io.vertx.core.Future.failedFuture("Email already exists");
                 }
-                String passwordHash = AuthUtils.hashPassword(password);
-                return userRepository.create(name.trim(), email.toLowerCase().trim(), passwordHash);
+                return passwordService.hash(password);
             })
+            .compose(passwordHash -> userRepository.create(name.trim(), email.toLowerCase().trim(), passwordHash))
             .onSuccess(user -> {
                 String token = AuthUtils.generateToken(user.getId(), user.getEmail());
                 JsonObject response = new JsonObject()
@@ -76,6 +77,13 @@ public class AuthRoutes {
                     .end(response.encode());
             })
             .onFailure(err -> {
+                if (LoadShedding.rejected(ctx, err)) {
+                    return;
+                }
+                if (err instanceof PasswordService.BusyException) {
+                    tooManyRequests(ctx, err);
+                    return;
+                }
                 logger.error("Signup error", err);
                 String errorMessage = err.getMessage();
                 int statusCode = errorMessage.contains("already exists") ? 409 : 500;
@@ -101,8 +109,10 @@ public class AuthRoutes {
         }
 
         userRepository.findByEmail(email.toLowerCase())
+            .compose(user -> passwordService.verify(password, user != null ? user.getPasswordHash() : null)
+                .map(valid -> valid ? user : null))
             .onSuccess(user -> {
-                if (user == null || !AuthUtils.verifyPassword(password, user.getPasswordHash())) {
+                if (user == null) {
                     ctx.response()
                         .setStatusCode(401)
                         .putHeader("Content-Type", "application/json")
@@ -110,6 +120,10 @@ public class AuthRoutes {
                     return;
                 }
 
+                if (AuthUtils.needsRehash(user.getPasswordHash())) {
+                    upgradePasswordHash(user.getId(), password);
+                }
+
                 String token = AuthUtils.generateToken(user.getId(), user.getEmail());
                 JsonObject response = new JsonObject()
                     .put("token", token)
@@ -124,6 +138,13 @@ public class AuthRoutes {
                     .end(response.encode());
             })
             .onFailure(err -> {
+                if (LoadShedding.rejected(ctx, err)) {
+                    return;
+                }
+                if (err instanceof PasswordService.BusyException) {
+                    tooManyRequests(ctx, err);
+                    return;
+                }
                 logger.error("Login error", err);
                 ctx.response()
                     .setStatusCode(500)
@@ -131,4 +152,19 @@ public class AuthRoutes {
                     .end(new JsonObject().put("error", "Internal server error").encode());
             });
     }
+
+    // Rewrites legacy or under-strength hashes now that we briefly hold the plaintext
+    private void upgradePasswordHash(Integer userId, String password) {
+        passwordService.hash(password)
+            .compose(passwordHash -> userRepository.updatePasswordHash(userId, passwordHash))
+            .onFailure(err -> logger.warn("Could not upgrade password hash for user {}", userId, err));
+    }
+
+    private void tooManyRequests(RoutingContext ctx, Throwable err) {
+        ctx.response()
+            .setStatusCode(429)
+            .putHeader("Content-Type", "application/json")
+            .putHeader("Retry-After", "1")
+            .end(new JsonObject().put("error", err.getMessage()).encode());
+    }
 }
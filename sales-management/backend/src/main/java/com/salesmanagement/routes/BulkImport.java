@@ -0,0 +1,193 @@
+package com.salesmanagement.routes;
+
+import io.vertx.core.Future;
+import io.vertx.pgclient.PgException;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Shared plumbing for the bulk import endpoints: parses a JSON array or NDJSON body, validates
+ * each row, and writes valid rows in fixed-size chunks. A chunk the database rejects for its data is
+ * retried row by row so one bad row only costs itself, and the response lists per-row errors by
+ * index. Any other failure, such as load shedding or a lost connection, fails the whole import.
+ */
+final class BulkImport {
+    static final int DEFAULT_CHUNK_SIZE = Integer.parseInt(System.getenv().getOrDefault("BULK_CHUNK_SIZE", "1000"));
+    static final int MAX_CHUNK_SIZE = 10000;
+
+    private BulkImport() {
+    }
+
+    /**
+     * Parses the request body. NDJSON is used when the content type says so; a line that isn't
+     * valid JSON becomes a {@code null} entry and is reported as a row error.
+     */
+    static List<JsonObject> parseRows(RoutingContext ctx) {
+        String contentType = ctx.request().getHeader("Content-Type");
+        List<JsonObject> rows = new ArrayList<>();
+
+        if (contentType != null && contentType.startsWith("application/x-ndjson")) {
+            for (String line : ctx.body().asString().split("\n")) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    rows.add(new JsonObject(line));
+                } catch (DecodeException e) {
+                    rows.add(null);
+                }
+            }
+            return rows;
+        }
+
+        JsonArray array;
+        try {
+            array = ctx.body().asJsonArray();
+        } catch (DecodeException | ClassCastException e) {
+            throw new IllegalArgumentException("Body must be a JSON array or NDJSON");
+        }
+        if (array == null) {
+            throw new IllegalArgumentException("Body must be a JSON array or NDJSON");
+        }
+        for (Object value : array) {
+            rows.add(value instanceof JsonObject ? (JsonObject) value : null);
+        }
+        return rows;
+    }
+
+    static int parseChunkSize(String value) {
+        if (value == null || value.isEmpty()) {
+            return DEFAULT_CHUNK_SIZE;
+        }
+        int chunkSize;
+        try {
+            chunkSize = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("chunkSize must be a number");
+        }
+        if (chunkSize < 1 || chunkSize > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("chunkSize must be between 1 and " + MAX_CHUNK_SIZE);
+        }
+        return chunkSize;
+    }
+
+    /**
+     * Converts and validates {@code rows}, then inserts the valid ones chunk by chunk. Chunks run
+     * sequentially so an import holds at most one pooled connection at a time.
+     *
+     * @param validator  returns an error message, or {@code null} if the row is valid
+     * @param chunkWriter inserts a whole chunk in one statement or batch
+     * @param rowWriter  inserts a single row; used to isolate failures after a chunk fails
+     * @return {@code {"inserted": n, "failed": n, "errors": [{"index": i, "error": "..."}]}}
+     */
+    static <T> Future<JsonObject> insert(List<JsonObject> rows, Function<JsonObject, T> parser,
+                                         Function<T, String> validator,
+                                         Function<List<T>, Future<Void>> chunkWriter,
+                                         Function<T, Future<?>> rowWriter, int chunkSize) {
+        JsonArray errors = new JsonArray();
+        List<T> valid = new ArrayList<>();
+        List<Integer> validIndexes = new ArrayList<>();
+
+        for (int i = 0; i < rows.size(); i++) {
+            JsonObject row = rows.get(i);
+            if (row == null) {
+                errors.add(rowError(i, "Row is not a JSON object"));
+                continue;
+            }
+            T item;
+            try {
+                item = parser.apply(row);
+            } catch (ClassCastException e) {
+                errors.add(rowError(i, "Field has the wrong type"));
+                continue;
+            }
+            String error = validator.apply(item);
+            if (error != null) {
+                errors.add(rowError(i, error));
+                continue;
+            }
+            valid.add(item);
+            validIndexes.add(i);
+        }
+
+        int[] inserted = {0};
+        Future<Void> chain = Future.succeededFuture();
+        for (int start = 0; start < valid.size(); start += chunkSize) {
+            int from = start;
+            int to = Math.min(start + chunkSize, valid.size());
+            chain = chain.compose(v -> chunkWriter.apply(valid.subList(from, to))
+                .onSuccess(done -> inserted[0] += to - from)
+                .recover(err -> rejectedData(err) != null
+                    ? insertRowByRow(valid, validIndexes, from, to, rowWriter, errors, inserted)
+                    : Future.failedFuture(err)));
+        }
+
+        return chain.map(v -> new JsonObject()
+            .put("inserted", inserted[0])
+            .put("failed", errors.size())
+            .put("errors", sortByIndex(errors)));
+    }
+
+    private static <T> Future<Void> insertRowByRow(List<T> valid, List<Integer> validIndexes, int from, int to,
+                                                   Function<T, Future<?>> rowWriter, JsonArray errors, int[] inserted) {
+        Future<Void> chain = Future.succeededFuture();
+        for (int i = from; i < to; i++) {
+            int position = i;
+            chain = chain.compose(v -> rowWriter.apply(valid.get(position))
+                .<Void>map(created -> {
+                    inserted[0]++;
+                    return null;
+                })
+                .recover(err -> {
+                    String error = rejectedData(err);
+                    if (error == null) {
+                        return Future.failedFuture(err);
+                    }
+                    errors.add(rowError(validIndexes.get(position), error));
+                    return Future.succeededFuture();
+                }));
+        }
+        return chain;
+    }
+
+    /**
+     * The row error to report if the database rejected the data itself (SQLSTATE class 22, data
+     * exception, or 23, integrity constraint violation), or {@code null} for any other failure.
+     * The server's message isn't passed on, since it can quote other rows' values and schema names.
+     */
+    private static String rejectedData(Throwable err) {
+        if (!(err instanceof PgException)) {
+            return null;
+        }
+        String sqlState = ((PgException) err).getSqlState();
+        if (sqlState == null) {
+            return null;
+        }
+        if (sqlState.equals("23505")) {
+            return "Duplicates an existing row";
+        }
+        if (sqlState.startsWith("23")) {
+            return "Violates a database constraint";
+        }
+        if (sqlState.startsWith("22")) {
+            return "Value is out of range or too long";
+        }
+        return null;
+    }
+
+    private static JsonObject rowError(int index, String message) {
+        return new JsonObject().put("index", index).put("error", message);
+    }
+
+    private static JsonArray sortByIndex(JsonArray errors) {
+        List<Object> list = new ArrayList<>(errors.getList());
+        list.sort((a, b) -> Integer.compare(((JsonObject) a).getInteger("index"), ((JsonObject) b).getInteger("index")));
+        return new JsonArray(list);
+    }
+}
@@ -0,0 +1,62 @@
+package com.salesmanagement.routes;
+
+import com.salesmanagement.repositories.TableVersion;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.ext.web.RoutingContext;
+
+/**
+ * ETag handling for reads backed by a {@link TableVersion}. Responses are marked
+ * {@code private, no-cache}: clients may keep them but must revalidate every time, so a stored
+ * copy is never reused past the next write this process sees.
+ */
+final class ConditionalGet {
+    private static final String CACHE_CONTROL = "private, no-cache";
+
+    private ConditionalGet() {
+    }
+
+    /**
+     * Answers 304 and returns true if the client's {@code If-None-Match} matches the current
+     * version. Otherwise tags the eventual 200 response with the ETag and returns false. The tag
+     * is taken before the caller queries, so a write that lands mid-request yields a stale tag
+     * (a harmless extra 200 next time), never a fresh tag on stale data.
+     */
+    static boolean notModified(RoutingContext ctx, TableVersion version) {
+        String etag = version.etag();
+        if (matches(ctx.request().getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            ctx.response()
+                .setStatusCode(304)
+                .putHeader(HttpHeaders.ETAG, etag)
+                .putHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL)
+                .end();
+            return true;
+        }
+        ctx.addHeadersEndHandler(v -> {
+            if (ctx.response().getStatusCode() == 200) {
+                ctx.response()
+                    .putHeader(HttpHeaders.ETAG, etag)
+                    .putHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+            }
+        });
+        return false;
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String opaque = opaque(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || opaque(tag).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // If-None-Match uses weak comparison, so a W/ prefix on either side doesn't prevent a match
+    private static String opaque(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+}
@@ -1,7 +1,14 @@
 package com.salesmanagement.routes;
 
 import com.salesmanagement.models.Customer;
+import com.salesmanagement.models.CustomerFilter;
+import com.salesmanagement.models.Page;
+import com.salesmanagement.models.PageCursor;
 import com.salesmanagement.repositories.CustomerRepository;
+import com.salesmanagement.repositories.ReplicaSet;
+import com.salesmanagement.repositories.TableVersion;
+import io.vertx.core.Future;
+import io.vertx.core.http.HttpServerResponse;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
@@ -9,32 +16,62 @@ import io.vertx.pgclient.PgPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+import java.util.function.Function;
+
 public class CustomerRoutes {
     private static final Logger logger = LoggerFactory.getLogger(CustomerRoutes.class);
     private final CustomerRepository customerRepository;
 
-    public CustomerRoutes(Router router, PgPool db) {
-        this.customerRepository = new CustomerRepository(db);
+    public CustomerRoutes(Router router, PgPool db, ReplicaSet replicas) {
+        this.customerRepository = new CustomerRepository(db, replicas);
 
         router.get("/api/customers").handler(this::getAll);
         router.get("/api/customers/:id").handler(this::getById);
+        router.get("/api/customers/:id/summary").handler(this::getSummary);
         router.post("/api/customers").handler(this::create);
+        router.post("/api/customers/bulk").handler(this::bulkCreate);
         router.put("/api/customers/:id").handler(this::update);
         router.delete("/api/customers/:id").handler(this::delete);
     }
 
     private void getAll(RoutingContext ctx) {
-        customerRepository.findAll()
-            .onSuccess(customers -> {
-                io.vertx.core.json.JsonArray jsonArray = new io.vertx.core.json.JsonArray();
-                for (Customer customer : customers) {
-                    jsonArray.add(toJson(customer));
+        if (ConditionalGet.notModified(ctx, TableVersion.CUSTOMERS)) {
+            return;
+        }
+        int limit;
+        PageCursor after = null;
+        CustomerFilter filter;
+        try {
+            filter = CustomerFilter.parse(ctx.request().getParam("q"), ctx.request().getParam("qPrefix"),
+                ctx.request().getParam("company"), ctx.request().getParam("companyPrefix"));
+            limit = Page.parseLimit(ctx.request().getParam("limit"));
+            String afterParam = ctx.request().getParam("after");
+            if (afterParam != null) {
+                after = PageCursor.decode(afterParam);
+                if (after.getCreatedAt() == null) {
+                    throw new IllegalArgumentException("Invalid cursor");
                 }
-                ctx.response()
-                    .putHeader("Content-Type", "application/json")
-                    .end(jsonArray.encode());
-            })
+            }
+        } catch (IllegalArgumentException e) {
+            ctx.response()
+                .setStatusCode(400)
+                .putHeader("Content-Type", "application/json")
+                .end(new JsonObject().put("error", e.getMessage()).encode());
+            return;
+        }
+
+        if ("true".equals(ctx.request().getParam("stream"))) {
+            streamAll(ctx, filter);
+            return;
+        }
+
+        PageCursor cursor = after;
+        PooledJson.respond(ctx, out -> customerRepository.writePage(filter, cursor, limit, out))
             .onFailure(err -> {
+                if (LoadShedding.rejected(ctx, err)) {
+                    return;
+                }
                 logger.error("Error fetching customers", err);
                 ctx.response()
                     .setStatusCode(500)
@@ -43,7 +80,33 @@ public class CustomerRoutes {
             });
     }
 
+    private void streamAll(RoutingContext ctx, CustomerFilter filter) {
+        HttpServerResponse response = ctx.response()
+            .setChunked(true)
+            .putHeader("Content-Type", "application/json");
+
+        customerRepository.streamAll(filter, response)
+            .onSuccess(v -> response.end())
+            .onFailure(err -> {
+                if (LoadShedding.rejected(ctx, err)) {
+                    return;
+                }
+                logger.error("Error streaming customers", err);
+                if (response.headWritten()) {
+                    // Part of the array is already on the wire, so abort rather than append an error
+                    response.reset();
+                } else {
+                    response
+                        .setStatusCode(500)
+                        .end(new JsonObject().put("error", "Failed to fetch customers").encode());
+                }
+            });
+    }
+
     private void getById(RoutingContext ctx) {
+        if (ConditionalGet.notModified(ctx, TableVersion.CUSTOMERS)) {
+            return;
+        }
         Integer id = Integer.parseInt(ctx.pathParam("id"));
         customerRepository.findById(id)
             .onSuccess(customer -> {
@@ -59,6 +122,9 @@ public class CustomerRoutes {
                 }
             })
             .onFailure(err -> {
+                if (LoadShedding.rejected(ctx, err)) {
+                    return;
+                }
                 logger.error("Error fetching customer", err);
                 ctx.response()
                     .setStatusCode(500)
@@ -67,15 +133,55 @@ public class CustomerRoutes {
             });
     }
 
+    /**
+     * The customer's page in one query: their details, lifetime order count and revenue, and
+     * their orders, newest first, paged with {@code limit} and {@code after} like {@code GET /api/orders}.
+     */
+    private void getSummary(RoutingContext ctx) {
+        Integer id = Integer.parseInt(ctx.pathParam("id"));
+        int limit;
+        PageCursor after = null;
+        try {
+            limit = Page.parseLimit(ctx.request().getParam("limit"));
+            String afterParam = ctx.request().getParam("after");
+            if (afterParam != null) {
+                after = PageCursor.decode(afterParam);
+                if (after.getCreatedAt() == null) {
+                    throw new IllegalArgumentException("Invalid cursor");
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            ctx.response()
+                .setStatusCode(400)
+                .putHeader("Content-Type", "application/json")
+                .end(new JsonObject().put("error", e.getMessage()).encode());
+            return;
+        }
+
+        PageCursor cursor = after;
+        PooledJson.respondIfFound(ctx, "Customer not found", out -> customerRepository.writeSummary(id, cursor, limit, out))
+            .onFailure(err -> {
+                if (LoadShedding.rejected(ctx, err)) {
+                    return;
+                }
+                logger.error("Error fetching customer summary", err);
+                ctx.response()
+                    .setStatusCode(500)
+                    .putHeader("Content-Type", "application/json")
+                    .end(new JsonObject().put("error", "Failed to fetch customer summary").encode());
+            });
+    }
+
     private void create(RoutingContext ctx) {
         JsonObject body = ctx.body().asJsonObject();
         Customer customer = fromJson(body);
 
-        if (customer.getName() == null || customer.getEmail() == null) {
+        String error = validate(customer);
+        if (error != null) {
             ctx.response()
                 .setStatusCode(400)
                 .putHeader("Content-Type", "application/json")
-                .end(new JsonObject().put("error", "Name and email are required").encode());
+                .end(new JsonObject().put("error", error).encode());
             return;
         }
 
@@ -87,6 +193,9 @@ public class CustomerRoutes {
                     .end(toJson(created).encode());
             })
             .onFailure(err -> {
+                if (LoadShedding.rejected(ctx, err)) {
+                    return;
+                }
                 logger.error("Error creating customer", err);
                 ctx.response()
                     .setStatusCode(500)
@@ -95,6 +204,43 @@ public class CustomerRoutes {
             });
     }
 
+    private void bulkCreate(RoutingContext ctx) {
+        List<JsonObject> rows;
+        int chunkSize;
+        try {
+            rows = BulkImport.parseRows(ctx);
+            chunkSize = BulkImport.parseChunkSize(ctx.request().getParam("chunkSize"));
+        } catch (IllegalArgumentException e) {
+            ctx.response()
+                .setStatusCode(400)
+                .putHeader("Content-Type", "application/json")
+                .end(new JsonObject().put("error", e.getMessage()).encode());
+            return;
+        }
+
+        // ?fast=true inserts each chunk as one unnest() statement instead of a pipelined batch
+        Function<List<Customer>, Future<Void>> chunkWriter = "true".equals(ctx.request().getParam("fast"))
+            ? customerRepository::createUnnest
+            : customerRepository::createBatch;
+
+        BulkImport.insert(rows, CustomerRoutes::fromJson, this::validate, chunkWriter, customerRepository::create, chunkSize)
+            .onSuccess(result -> {
+                ctx.response()
+                    .putHeader("Content-Type", "application/json")
+                    .end(result.encode());
+            })
+            .onFailure(err -> {
+                if (LoadShedding.rejected(ctx, err)) {
+                    return;
+                }
+                logger.error("Error importing customers", err);
+                ctx.response()
+                    .setStatusCode(500)
+                    .putHeader("Content-Type", "application/json")
+                    .end(new JsonObject().put("error", "Failed to import customers").encode());
+            });
+    }
+
     private void update(RoutingContext ctx) {
         Integer id = Integer.parseInt(ctx.pathParam("id"));
         JsonObject body = ctx.body().asJsonObject();
@@ -114,6 +260,9 @@ public class CustomerRoutes {
                 }
             })
             .onFailure(err -> {
+                if (LoadShedding.rejected(ctx, err)) {
+                    return;
+                }
                 logger.error("Error updating customer", err);
                 ctx.response()
                     .setStatusCode(500)
@@ -131,6 +280,9 @@ public class CustomerRoutes {
                     .end();
             })
             .onFailure(err -> {
+                if (LoadShedding.rejected(ctx, err)) {
+                    return;
+                }
                 logger.error("Error deleting customer", err);
                 ctx.response()
                     .setStatusCode(500)
@@ -139,7 +291,7 @@ public class CustomerRoutes {
             });
     }
 
-    private JsonObject toJson(Customer customer) {
+    public static JsonObject toJson(Customer customer) {
         JsonObject json = new JsonObject()
             .put("id", customer.getId())
             .put("name", customer.getName())
@@ -154,7 +306,14 @@ public class CustomerRoutes {
         return json;
     }
 
-    private Customer fromJson(JsonObject json) {
+    private String validate(Customer customer) {
+        if (customer.getName() == null || customer.getEmail() == null) {
+            return "Name and email are required";
+        }
+        return null;
+    }
+
+    public static Customer fromJson(JsonObject json) {
         Customer customer = new Customer();
         if (json.containsKey("name")) customer.setName(json.getString("name"));
         if (json.containsKey("email")) customer.setEmail(json.getString("email"));
@@ -0,0 +1,30 @@
+package com.salesmanagement.routes;
+
+import com.salesmanagement.repositories.ConcurrencyLimiter;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+
+/**
+ * Turns database load shedding into {@code 503 Service Unavailable}.
+ */
+final class LoadShedding {
+    private LoadShedding() {
+    }
+
+    /**
+     * Answers 503 with a {@code Retry-After} and returns true if {@code err} is a call the
+     * {@link ConcurrencyLimiter} refused to queue. Such a call never reached the database, so it
+     * is safe to retry and isn't logged as an error.
+     */
+    static boolean rejected(RoutingContext ctx, Throwable err) {
+        if (!(err instanceof ConcurrencyLimiter.OverloadedException) || ctx.response().headWritten()) {
+            return false;
+        }
+        ctx.response()
+            .setStatusCode(503)
+            .putHeader("Content-Type", "application/json")
+            .putHeader("Retry-After", "1")
+            .end(new JsonObject().put("error", err.getMessage()).encode());
+        return true;
+    }
+}
@@ -1,8 +1,18 @@
 package com.salesmanagement.routes;
 
+import com.salesmanagement.cache.IdempotencyCache;
+import com.salesmanagement.cache.ProductCache;
+import com.salesmanagement.models.IdempotencyKey;
 import com.salesmanagement.models.Order;
 import com.salesmanagement.models.Order.OrderItem;
+import com.salesmanagement.models.Page;
+import com.salesmanagement.models.PageCursor;
 import com.salesmanagement.repositories.OrderRepository;
+import com.salesmanagement.repositories.ReplicaSet;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.Router;
@@ -11,15 +21,23 @@ import io.vertx.pgclient.PgPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.HexFormat;
 import java.util.List;
 
 public class OrderRoutes {
     private static final Logger logger = LoggerFactory.getLogger(OrderRoutes.class);
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+    private final Vertx vertx;
     private final OrderRepository orderRepository;
+    private final IdempotencyCache recentKeys = new IdempotencyCache();
 
-    public OrderRoutes(Router router, PgPool db) {
-        this.orderRepository = new OrderRepository(db);
+    public OrderRoutes(Vertx vertx, Router router, PgPool db, ReplicaSet replicas) {
+        this.vertx = vertx;
+        this.orderRepository = new OrderRepository(db, replicas);
 
         router.get("/api/orders").handler(this::getAll);
         router.get("/api/orders/:id").handler(this::getById);
@@ -28,17 +46,36 @@ public class OrderRoutes {
     }
 
     private void getAll(RoutingContext ctx) {
-        orderRepository.findAll()
-            .onSuccess(orders -> {
-                JsonArray jsonArray = new JsonArray();
-                for (Order order : orders) {
-                    jsonArray.add(toJson(order));
+        if ("true".equals(ctx.request().getParam("stream"))) {
+            streamAll(ctx);
+            return;
+        }
+
+        int limit;
+        PageCursor after = null;
+        try {
+            limit = Page.parseLimit(ctx.request().getParam("limit"));
+            String afterParam = ctx.request().getParam("after");
+            if (afterParam != null) {
+                after = PageCursor.decode(afterParam);
+                if (after.getCreatedAt() == null) {
+                    throw new IllegalArgumentException("Invalid cursor");
                 }
-                ctx.response()
-                    .putHeader("Content-Type", "application/json")
-                    .end(jsonArray.encode());
-            })
+            }
+        } catch (IllegalArgumentException e) {
+            ctx.response()
+                .setStatusCode(400)
+                .putHeader("Content-Type", "application/json")
+                .end(new JsonObject().put("error", e.getMessage()).encode());
+            return;
+        }
+
+        PageCursor cursor = after;
+        PooledJson.respond(ctx, out -> orderRepository.writePage(cursor, limit, out))
             .onFailure(err -> {
+                if (LoadShedding.rejected(ctx, err)) {
+                    return;
+                }
                 logger.error("Error fetching orders", err);
                 ctx.response()
                     .setStatusCode(500)
@@ -47,6 +84,29 @@ public class OrderRoutes {
             });
     }
 
+    private void streamAll(RoutingContext ctx) {
+        HttpServerResponse response = ctx.response()
+            .setChunked(true)
+            .putHeader("Content-Type", "application/json");
+
+        orderRepository.streamAll(response)
+            .onSuccess(v -> response.end())
+            .onFailure(err -> {
+                if (LoadShedding.rejected(ctx, err)) {
+                    return;
+                }
+                logger.error("Error streaming orders", err);
+                if (response.headWritten()) {
+                    // Part of the array is already on the wire, so abort rather than append an error
+                    response.reset();
+                } else {
+                    response
+                        .setStatusCode(500)
+                        .end(new JsonObject().put("error", "Failed to fetch orders").encode());
+                }
+            });
+    }
+
     private void getById(RoutingContext ctx) {
         Integer id = Integer.parseInt(ctx.pathParam("id"));
         orderRepository.findById(id)
@@ -63,6 +123,9 @@ public class OrderRoutes {
                 }
             })
             .onFailure(err -> {
+                if (LoadShedding.rejected(ctx, err)) {
+                    return;
+                }
                 logger.error("Error fetching order", err);
                 ctx.response()
                     .setStatusCode(500)
@@ -83,25 +146,65 @@ public class OrderRoutes {
             return;
         }
 
-        // Calculate total
-        double total = order.getItems().stream()
-            .mapToDouble(item -> item.getUnitPrice() * item.getQuantity())
-            .sum();
-        order.setTotal(total);
-
-        // Calculate line totals
         for (OrderItem item : order.getItems()) {
-            item.setLineTotal(item.getUnitPrice() * item.getQuantity());
-        }
-
-        orderRepository.create(order)
-            .onSuccess(created -> {
+            if (item.getProductId() == null || item.getQuantity() == null || item.getQuantity() <= 0) {
                 ctx.response()
-                    .setStatusCode(201)
+                    .setStatusCode(400)
                     .putHeader("Content-Type", "application/json")
-                    .end(toJson(created).encode());
-            })
+                    .end(new JsonObject().put("error", "Each item needs a productId and a positive quantity").encode());
+                return;
+            }
+        }
+
+        String idempotencyKey = ctx.request().getHeader(IDEMPOTENCY_KEY);
+        Future<Buffer> placed;
+        if (idempotencyKey == null) {
+            placed = place(order, null);
+        } else if (idempotencyKey.isEmpty() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            ctx.response()
+                .setStatusCode(400)
+                .putHeader("Content-Type", "application/json")
+                .end(new JsonObject().put("error", IDEMPOTENCY_KEY + " must be 1 to " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters").encode());
+            return;
+        } else {
+            IdempotencyKey key = new IdempotencyKey(Integer.valueOf(ctx.user().principal().getString("sub")), idempotencyKey,
+                requestHash(ctx.body().buffer()));
+            placed = recentKeys.run(key, () -> place(order, key));
+        }
+
+        placed
+            .onSuccess(created -> ctx.response()
+                .setStatusCode(201)
+                .putHeader("Content-Type", "application/json")
+                .end(created))
             .onFailure(err -> {
+                if (LoadShedding.rejected(ctx, err)) {
+                    return;
+                }
+                if (err instanceof OrderRepository.DuplicateRequestException) {
+                    ctx.response()
+                        .setStatusCode(422)
+                        .putHeader("Content-Type", "application/json")
+                        .end(new JsonObject().put("error", IDEMPOTENCY_KEY + " was already used for a different order").encode());
+                    return;
+                }
+                if (err instanceof OrderRepository.UnknownProductException || err instanceof OrderRepository.UnknownCustomerException) {
+                    ctx.response()
+                        .setStatusCode(400)
+                        .putHeader("Content-Type", "application/json")
+                        .end(new JsonObject().put("error", err.getMessage()).encode());
+                    return;
+                }
+                if (err instanceof OrderRepository.InsufficientStockException) {
+                    ctx.response()
+                        .setStatusCode(409)
+                        .putHeader("Content-Type", "application/json")
+                        .end(new JsonObject()
+                            .put("error", err.getMessage())
+                            .put("productId", ((OrderRepository.InsufficientStockException) err).getProductId())
+                            .encode());
+                    return;
+                }
                 logger.error("Error creating order", err);
                 ctx.response()
                     .setStatusCode(500)
@@ -110,15 +213,58 @@ public class OrderRoutes {
             });
     }
 
+    /**
+     * Places {@code order} and announces it, returning the encoded response body. With a
+     * {@code key}, a retry of a request that already placed its order gets the exact bytes of that
+     * order's stored response instead; a different request under the same key fails with
+     * {@link OrderRepository.DuplicateRequestException}.
+     */
+    private Future<Buffer> place(Order order, IdempotencyKey key) {
+        // Prices, line totals and the order total are computed from the products table
+        return orderRepository.create(order, key, OrderRoutes::toBody)
+            .map(created -> {
+                StreamRoutes.publish(vertx, "order.created", "order:" + created.getId(), toJson(created));
+                for (OrderItem item : created.getItems()) {
+                    ProductCache.publishInvalidation(vertx, item.getProductId());
+                    // The new stock isn't read back; clients refetch the product if they show it
+                    StreamRoutes.publish(vertx, "product.stock", "product:" + item.getProductId(),
+                        new JsonObject().put("id", item.getProductId()));
+                }
+                return toBody(created);
+            })
+            .recover(err -> err instanceof OrderRepository.DuplicateRequestException duplicate
+                && duplicate.getRequestHash().equals(key.getRequestHash())
+                ? Future.succeededFuture(duplicate.getResponse())
+                : Future.failedFuture(err));
+    }
+
+    // Deterministic, so the body stored with an idempotency key matches the one sent
+    private static Buffer toBody(Order order) {
+        return toJson(order).toBuffer();
+    }
+
+    private static String requestHash(Buffer body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body != null ? body.getBytes() : new byte[0]);
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     private void delete(RoutingContext ctx) {
         Integer id = Integer.parseInt(ctx.pathParam("id"));
         orderRepository.delete(id)
             .onSuccess(v -> {
+                StreamRoutes.publish(vertx, "order.deleted", "order:" + id, new JsonObject().put("id", id));
                 ctx.response()
                     .setStatusCode(204)
                     .end();
             })
             .onFailure(err -> {
+                if (LoadShedding.rejected(ctx, err)) {
+                    return;
+                }
                 logger.error("Error deleting order", err);
                 ctx.response()
                     .setStatusCode(500)
@@ -127,7 +273,8 @@ public class OrderRoutes {
             });
     }
 
-    private JsonObject toJson(Order order) {
+    // The JSON conversions are static and public so the benchmarks module can measure them in isolation
+    public static JsonObject toJson(Order order) {
         JsonArray itemsArray = new JsonArray();
         for (OrderItem item : order.getItems()) {
             itemsArray.add(new JsonObject()
@@ -153,7 +300,7 @@ public class OrderRoutes {
         return json;
     }
 
-    private Order fromJson(JsonObject json) {
+    public static Order fromJson(JsonObject json) {
         Order order = new Order();
         
         if (json.containsKey("customerId")) {
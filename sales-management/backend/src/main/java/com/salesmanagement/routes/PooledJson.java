@@ -0,0 +1,52 @@
+package com.salesmanagement.routes;
+
+import com.salesmanagement.repositories.JsonRows;
+import io.netty.buffer.ByteBuf;
+import io.vertx.core.Future;
+import io.vertx.core.buffer.impl.BufferImpl;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+
+import java.util.function.Function;
+
+/**
+ * Sends a JSON body that a repository encodes into a pooled direct buffer. The buffer goes to
+ * the socket without another copy and is returned to the pool once the response is written.
+ */
+final class PooledJson {
+    private PooledJson() {
+    }
+
+    /**
+     * Lets {@code writer} fill a pooled buffer and ends the response with it. The returned future
+     * fails only if {@code writer} does, in which case nothing has been sent yet.
+     */
+    static Future<Void> respond(RoutingContext ctx, Function<ByteBuf, Future<Void>> writer) {
+        return respondIfFound(ctx, null, out -> writer.apply(out).map(true));
+    }
+
+    /**
+     * Like {@link #respond}, for a body that may not exist: when {@code writer} resolves false,
+     * having written nothing, the response is a 404 with {@code notFound} as its error.
+     */
+    static Future<Void> respondIfFound(RoutingContext ctx, String notFound, Function<ByteBuf, Future<Boolean>> writer) {
+        ByteBuf out = JsonRows.pooledBuffer();
+        return writer.apply(out)
+            .onSuccess(found -> {
+                if (!found) {
+                    out.release();
+                    ctx.response()
+                        .setStatusCode(404)
+                        .putHeader("Content-Type", "application/json")
+                        .end(new JsonObject().put("error", notFound).encode());
+                    return;
+                }
+                ctx.response()
+                    .putHeader("Content-Type", "application/json")
+                    .end(BufferImpl.buffer(out))
+                    .onComplete(ar -> out.release());
+            })
+            .onFailure(err -> out.release())
+            .mapEmpty();
+    }
+}
@@ -1,7 +1,16 @@
 package com.salesmanagement.routes;
 
+import com.salesmanagement.cache.ProductCache;
+import com.salesmanagement.models.Page;
+import com.salesmanagement.models.PageCursor;
 import com.salesmanagement.models.Product;
+import com.salesmanagement.models.ProductFilter;
 import com.salesmanagement.repositories.ProductRepository;
+import com.salesmanagement.repositories.ReplicaSet;
+import com.salesmanagement.repositories.TableVersion;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServerResponse;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
@@ -9,32 +18,75 @@ import io.vertx.pgclient.PgPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+import java.util.function.Function;
+
 public class ProductRoutes {
     private static final Logger logger = LoggerFactory.getLogger(ProductRoutes.class);
+    private final Vertx vertx;
     private final ProductRepository productRepository;
+    private final ProductCache productCache;
 
-    public ProductRoutes(Router router, PgPool db) {
-        this.productRepository = new ProductRepository(db);
+    public ProductRoutes(Vertx vertx, Router router, PgPool db, ReplicaSet replicas) {
+        this.vertx = vertx;
+        this.productRepository = new ProductRepository(db, replicas);
+        this.productCache = new ProductCache(vertx, productRepository);
 
         router.get("/api/products").handler(this::getAll);
         router.get("/api/products/:id").handler(this::getById);
         router.post("/api/products").handler(this::create);
+        router.post("/api/products/bulk").handler(this::bulkCreate);
         router.put("/api/products/:id").handler(this::update);
         router.delete("/api/products/:id").handler(this::delete);
     }
 
     private void getAll(RoutingContext ctx) {
-        productRepository.findAll()
-            .onSuccess(products -> {
-                io.vertx.core.json.JsonArray jsonArray = new io.vertx.core.json.JsonArray();
-                for (Product product : products) {
-                    jsonArray.add(toJson(product));
-                }
-                ctx.response()
-                    .putHeader("Content-Type", "application/json")
-                    .end(jsonArray.encode());
-            })
+        if (ConditionalGet.notModified(ctx, TableVersion.PRODUCTS)) {
+            return;
+        }
+        int limit;
+        PageCursor after = null;
+        ProductFilter filter;
+        try {
+            filter = ProductFilter.parse(ctx.request().getParam("q"), ctx.request().getParam("qPrefix"), ctx.request().getParam("category"),
+                ctx.request().getParam("minPrice"), ctx.request().getParam("maxPrice"), ctx.request().getParam("inStock"));
+            limit = Page.parseLimit(ctx.request().getParam("limit"));
+            String afterParam = ctx.request().getParam("after");
+            if (afterParam != null) {
+                after = PageCursor.decode(afterParam);
+            }
+        } catch (IllegalArgumentException e) {
+            ctx.response()
+                .setStatusCode(400)
+                .putHeader("Content-Type", "application/json")
+                .end(new JsonObject().put("error", e.getMessage()).encode());
+            return;
+        }
+
+        if ("true".equals(ctx.request().getParam("stream"))) {
+            streamAll(ctx, filter);
+            return;
+        }
+
+        Future<Void> sent;
+        if (filter.isEmpty()) {
+            sent = productCache.findPage(after, limit)
+                .map(body -> {
+                    ctx.response()
+                        .putHeader("Content-Type", "application/json")
+                        .end(body);
+                    return null;
+                });
+        } else {
+            // Searches bypass the page cache; there are too many combinations for it to pay off
+            PageCursor cursor = after;
+            sent = PooledJson.respond(ctx, out -> productRepository.writePage(filter, cursor, limit, out));
+        }
+        sent
             .onFailure(err -> {
+                if (LoadShedding.rejected(ctx, err)) {
+                    return;
+                }
                 logger.error("Error fetching products", err);
                 ctx.response()
                     .setStatusCode(500)
@@ -43,9 +95,35 @@ public class ProductRoutes {
             });
     }
 
+    private void streamAll(RoutingContext ctx, ProductFilter filter) {
+        HttpServerResponse response = ctx.response()
+            .setChunked(true)
+            .putHeader("Content-Type", "application/json");
+
+        productRepository.streamAll(filter, response)
+            .onSuccess(v -> response.end())
+            .onFailure(err -> {
+                if (LoadShedding.rejected(ctx, err)) {
+                    return;
+                }
+                logger.error("Error streaming products", err);
+                if (response.headWritten()) {
+                    // Part of the array is already on the wire, so abort rather than append an error
+                    response.reset();
+                } else {
+                    response
+                        .setStatusCode(500)
+                        .end(new JsonObject().put("error", "Failed to fetch products").encode());
+                }
+            });
+    }
+
     private void getById(RoutingContext ctx) {
+        if (ConditionalGet.notModified(ctx, TableVersion.PRODUCTS)) {
+            return;
+        }
         Integer id = Integer.parseInt(ctx.pathParam("id"));
-        productRepository.findById(id)
+        productCache.findById(id)
             .onSuccess(product -> {
                 if (product == null) {
                     ctx.response()
@@ -59,6 +137,9 @@ public class ProductRoutes {
                 }
             })
             .onFailure(err -> {
+                if (LoadShedding.rejected(ctx, err)) {
+                    return;
+                }
                 logger.error("Error fetching product", err);
                 ctx.response()
                     .setStatusCode(500)
@@ -71,22 +152,28 @@ public class ProductRoutes {
         JsonObject body = ctx.body().asJsonObject();
         Product product = fromJson(body);
 
-        if (product.getName() == null || product.getPrice() == null) {
+        String error = validate(product);
+        if (error != null) {
             ctx.response()
                 .setStatusCode(400)
                 .putHeader("Content-Type", "application/json")
-                .end(new JsonObject().put("error", "Name and price are required").encode());
+                .end(new JsonObject().put("error", error).encode());
             return;
         }
 
         productRepository.create(product)
             .onSuccess(created -> {
+                productCache.invalidate(created.getId());
+                StreamRoutes.publish(vertx, "product.created", "product:" + created.getId(), toJson(created));
                 ctx.response()
                     .setStatusCode(201)
                     .putHeader("Content-Type", "application/json")
                     .end(toJson(created).encode());
             })
             .onFailure(err -> {
+                if (LoadShedding.rejected(ctx, err)) {
+                    return;
+                }
                 logger.error("Error creating product", err);
                 ctx.response()
                     .setStatusCode(500)
@@ -95,6 +182,46 @@ public class ProductRoutes {
             });
     }
 
+    private void bulkCreate(RoutingContext ctx) {
+        List<JsonObject> rows;
+        int chunkSize;
+        try {
+            rows = BulkImport.parseRows(ctx);
+            chunkSize = BulkImport.parseChunkSize(ctx.request().getParam("chunkSize"));
+        } catch (IllegalArgumentException e) {
+            ctx.response()
+                .setStatusCode(400)
+                .putHeader("Content-Type", "application/json")
+                .end(new JsonObject().put("error", e.getMessage()).encode());
+            return;
+        }
+
+        // ?fast=true inserts each chunk as one unnest() statement instead of a pipelined batch
+        Function<List<Product>, Future<Void>> chunkWriter = "true".equals(ctx.request().getParam("fast"))
+            ? productRepository::createUnnest
+            : productRepository::createBatch;
+
+        BulkImport.insert(rows, ProductRoutes::fromJson, this::validate, chunkWriter, productRepository::create, chunkSize)
+            .onSuccess(result -> {
+                productCache.invalidate(null);
+                // Too many rows to send one by one; clients reload the list instead
+                StreamRoutes.publish(vertx, "products.imported", "products", new JsonObject().put("inserted", result.getInteger("inserted")));
+                ctx.response()
+                    .putHeader("Content-Type", "application/json")
+                    .end(result.encode());
+            })
+            .onFailure(err -> {
+                if (LoadShedding.rejected(ctx, err)) {
+                    return;
+                }
+                logger.error("Error importing products", err);
+                ctx.response()
+                    .setStatusCode(500)
+                    .putHeader("Content-Type", "application/json")
+                    .end(new JsonObject().put("error", "Failed to import products").encode());
+            });
+    }
+
     private void update(RoutingContext ctx) {
         Integer id = Integer.parseInt(ctx.pathParam("id"));
         JsonObject body = ctx.body().asJsonObject();
@@ -102,6 +229,10 @@ public class ProductRoutes {
 
         productRepository.update(id, product)
             .onSuccess(updated -> {
+                productCache.invalidate(id);
+                if (updated != null) {
+                    StreamRoutes.publish(vertx, "product.updated", "product:" + id, toJson(updated));
+                }
                 if (updated == null) {
                     ctx.response()
                         .setStatusCode(404)
@@ -114,6 +245,9 @@ public class ProductRoutes {
                 }
             })
             .onFailure(err -> {
+                if (LoadShedding.rejected(ctx, err)) {
+                    return;
+                }
                 logger.error("Error updating product", err);
                 ctx.response()
                     .setStatusCode(500)
@@ -126,11 +260,16 @@ public class ProductRoutes {
         Integer id = Integer.parseInt(ctx.pathParam("id"));
         productRepository.delete(id)
             .onSuccess(v -> {
+                productCache.invalidate(id);
+                StreamRoutes.publish(vertx, "product.deleted", "product:" + id, new JsonObject().put("id", id));
                 ctx.response()
                     .setStatusCode(204)
                     .end();
             })
             .onFailure(err -> {
+                if (LoadShedding.rejected(ctx, err)) {
+                    return;
+                }
                 logger.error("Error deleting product", err);
                 ctx.response()
                     .setStatusCode(500)
@@ -139,7 +278,7 @@ public class ProductRoutes {
             });
     }
 
-    private JsonObject toJson(Product product) {
+    public static JsonObject toJson(Product product) {
         return new JsonObject()
             .put("id", product.getId())
             .put("name", product.getName())
@@ -149,7 +288,14 @@ public class ProductRoutes {
             .put("description", product.getDescription());
     }
 
-    private Product fromJson(JsonObject json) {
+    private String validate(Product product) {
+        if (product.getName() == null || product.getPrice() == null) {
+            return "Name and price are required";
+        }
+        return null;
+    }
+
+    public static Product fromJson(JsonObject json) {
         Product product = new Product();
         if (json.containsKey("name")) product.setName(json.getString("name"));
         if (json.containsKey("category")) product.setCategory(json.getString("category"));
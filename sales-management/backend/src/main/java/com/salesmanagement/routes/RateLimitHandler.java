@@ -0,0 +1,109 @@
+package com.salesmanagement.routes;
+
+import com.salesmanagement.config.MetricsConfig;
+import com.salesmanagement.utils.RateLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Rejects requests over their route group's rate with {@code 429} and a {@code Retry-After}.
+ * The buckets are static, so a limit holds for the whole process however many verticle
+ * instances serve it. Each group is set as {@code <requests>/<seconds>}, or {@code 0} to disable:
+ * <ul>
+ *   <li>{@code RATE_LIMIT_IP}: all of {@code /api}, per client IP, checked before anything else</li>
+ *   <li>{@code RATE_LIMIT_AUTH}: {@code /api/auth/*}, per client IP</li>
+ *   <li>{@code RATE_LIMIT_READ} / {@code RATE_LIMIT_WRITE}: authenticated GETs and other
+ *   methods, per user</li>
+ * </ul>
+ */
+public class RateLimitHandler implements Handler<RoutingContext> {
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitHandler.class);
+    private static final RateLimiter PER_IP = RateLimiter.fromSpec(System.getenv().getOrDefault("RATE_LIMIT_IP", "300/1"));
+    private static final RateLimiter AUTH = RateLimiter.fromSpec(System.getenv().getOrDefault("RATE_LIMIT_AUTH", "10/60"));
+    private static final RateLimiter READS = RateLimiter.fromSpec(System.getenv().getOrDefault("RATE_LIMIT_READ", "100/1"));
+    private static final RateLimiter WRITES = RateLimiter.fromSpec(System.getenv().getOrDefault("RATE_LIMIT_WRITE", "20/1"));
+    private static final long EVICT_INTERVAL_MS = 60_000;
+    private static boolean evicting;
+
+    private final Function<RoutingContext, RateLimiter> limiter;
+    private final Function<RoutingContext, String> key;
+    private final Counter rejected;
+
+    private RateLimitHandler(String group, Function<RoutingContext, RateLimiter> limiter, Function<RoutingContext, String> key) {
+        this.limiter = limiter;
+        this.key = key;
+        this.rejected = Counter.builder("http.rate.limited")
+            .description("Requests rejected with 429 by a rate limit")
+            .tag("group", group)
+            .register(MetricsConfig.registry());
+    }
+
+    public static RateLimitHandler perIp() {
+        return new RateLimitHandler("ip", ctx -> PER_IP, RateLimitHandler::clientIp);
+    }
+
+    public static RateLimitHandler auth() {
+        return new RateLimitHandler("auth", ctx -> AUTH, RateLimitHandler::clientIp);
+    }
+
+    /**
+     * Must run after authentication; requests without a user pass through.
+     */
+    public static RateLimitHandler perUser() {
+        return new RateLimitHandler("user",
+            ctx -> ctx.request().method() == HttpMethod.GET || ctx.request().method() == HttpMethod.HEAD ? READS : WRITES,
+            ctx -> ctx.user() != null ? ctx.user().principal().getString("sub") : null);
+    }
+
+    /**
+     * Periodically drops buckets that have refilled, so memory tracks active clients. Runs once
+     * per process however many instances call it.
+     */
+    public static synchronized void startEviction(Vertx vertx) {
+        if (evicting) {
+            return;
+        }
+        evicting = true;
+        List<RateLimiter> limiters = Stream.of(PER_IP, AUTH, READS, WRITES).filter(Objects::nonNull).toList();
+        vertx.setPeriodic(EVICT_INTERVAL_MS, id -> vertx.executeBlocking(() -> {
+            int evicted = 0;
+            for (RateLimiter limiter : limiters) {
+                evicted += limiter.evictIdle();
+            }
+            return evicted;
+        }, false).onSuccess(evicted -> logger.debug("Evicted {} idle rate limit buckets", evicted)));
+    }
+
+    @Override
+    public void handle(RoutingContext ctx) {
+        RateLimiter rateLimiter = limiter.apply(ctx);
+        String id = rateLimiter != null ? key.apply(ctx) : null;
+        long waitNanos = id != null ? rateLimiter.tryAcquire(id) : 0;
+        if (waitNanos == 0) {
+            ctx.next();
+            return;
+        }
+        rejected.increment();
+        ctx.response()
+            .setStatusCode(429)
+            .putHeader("Content-Type", "application/json")
+            .putHeader("Retry-After", String.valueOf(TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999)))
+            .end(new JsonObject().put("error", "Too many requests").encode());
+    }
+
+    private static String clientIp(RoutingContext ctx) {
+        return ctx.request().remoteAddress() != null ? ctx.request().remoteAddress().hostAddress() : null;
+    }
+}
@@ -0,0 +1,112 @@
+package com.salesmanagement.routes;
+
+import com.salesmanagement.models.Page;
+import com.salesmanagement.repositories.ReportRepository;
+import com.salesmanagement.repositories.ReplicaSet;
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.pgclient.PgPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Read-only sales reports. Figures come from the pre-aggregated rollup tables, so they trail
+ * order writes by up to one refresh interval of {@code ReportRollupVerticle}.
+ */
+public class ReportRoutes {
+    private static final Logger logger = LoggerFactory.getLogger(ReportRoutes.class);
+    private static final int DEFAULT_RANGE_DAYS = 30;
+    private static final int DEFAULT_TOP_LIMIT = 10;
+    private final ReportRepository reportRepository;
+
+    public ReportRoutes(Router router, PgPool db, ReplicaSet replicas) {
+        this.reportRepository = new ReportRepository(db, replicas);
+
+        router.get("/api/reports/revenue-by-day").handler(this::revenueByDay);
+        router.get("/api/reports/top-products").handler(this::topProducts);
+        router.get("/api/reports/top-customers").handler(this::topCustomers);
+        router.get("/api/reports/category-mix").handler(this::categoryMix);
+    }
+
+    private void revenueByDay(RoutingContext ctx) {
+        LocalDate from;
+        LocalDate to;
+        try {
+            String toParam = ctx.request().getParam("to");
+            String fromParam = ctx.request().getParam("from");
+            to = toParam != null ? LocalDate.parse(toParam) : LocalDate.now();
+            from = fromParam != null ? LocalDate.parse(fromParam) : to.minusDays(DEFAULT_RANGE_DAYS - 1);
+        } catch (DateTimeParseException e) {
+            badRequest(ctx, "from and to must be dates in YYYY-MM-DD format");
+            return;
+        }
+        if (from.isAfter(to)) {
+            badRequest(ctx, "from must not be after to");
+            return;
+        }
+        respond(ctx, reportRepository.revenueByDay(from, to));
+    }
+
+    private void topProducts(RoutingContext ctx) {
+        Integer limit = parseTopLimit(ctx);
+        if (limit != null) {
+            respond(ctx, reportRepository.topProducts(limit));
+        }
+    }
+
+    private void topCustomers(RoutingContext ctx) {
+        Integer limit = parseTopLimit(ctx);
+        if (limit != null) {
+            respond(ctx, reportRepository.topCustomers(limit));
+        }
+    }
+
+    private void categoryMix(RoutingContext ctx) {
+        respond(ctx, reportRepository.categoryMix());
+    }
+
+    private Integer parseTopLimit(RoutingContext ctx) {
+        String value = ctx.request().getParam("limit");
+        if (value == null || value.isEmpty()) {
+            return DEFAULT_TOP_LIMIT;
+        }
+        try {
+            return Page.parseLimit(value);
+        } catch (IllegalArgumentException e) {
+            badRequest(ctx, e.getMessage());
+            return null;
+        }
+    }
+
+    private void respond(RoutingContext ctx, Future<JsonArray> report) {
+        report
+            .onSuccess(items -> {
+                ctx.response()
+                    .putHeader("Content-Type", "application/json")
+                    .end(items.encode());
+            })
+            .onFailure(err -> {
+                if (LoadShedding.rejected(ctx, err)) {
+                    return;
+                }
+                logger.error("Error fetching report", err);
+                ctx.response()
+                    .setStatusCode(500)
+                    .putHeader("Content-Type", "application/json")
+                    .end(new JsonObject().put("error", "Failed to fetch report").encode());
+            });
+    }
+
+    private void badRequest(RoutingContext ctx, String error) {
+        ctx.response()
+            .setStatusCode(400)
+            .putHeader("Content-Type", "application/json")
+            .end(new JsonObject().put("error", error).encode());
+    }
+}
@@ -0,0 +1,234 @@
+package com.salesmanagement.routes;
+
+import com.salesmanagement.config.MetricsConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.http.ServerWebSocket;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.streams.WriteStream;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Live updates at {@code /api/stream}, as Server-Sent Events or, on an upgrade request, as a
+ * WebSocket of {@code {"type":...,"data":...}} text messages. Writers {@link #publish} deltas on the
+ * event bus; each verticle instance fans them out to the subscribers on its own event loop,
+ * encoding every delta once.
+ *
+ * <p>A subscriber whose connection can't keep up gets its deltas queued, where a newer delta for
+ * the same entity replaces the older one. If more than {@code STREAM_MAX_PENDING} entities pile up
+ * the queue is dropped and the client is sent a {@code resync} event to reload instead.
+ */
+public class StreamRoutes {
+    public static final String ADDRESS = "stream.deltas";
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamRoutes.class);
+    private static final int MAX_PENDING = Integer.parseInt(System.getenv().getOrDefault("STREAM_MAX_PENDING", "256"));
+    // Keeps idle connections from being closed by proxies and detects clients that went away
+    private static final long HEARTBEAT_MS = Long.parseLong(System.getenv().getOrDefault("STREAM_HEARTBEAT_SECONDS", "15")) * 1000;
+    private static final Buffer HEARTBEAT = Buffer.buffer(":\n\n");
+    private static final Delta RESYNC = new Delta("resync", "resync", new JsonObject());
+
+    private static final AtomicInteger SUBSCRIBERS = new AtomicInteger();
+    private static final Counter COALESCED;
+    private static final Counter RESYNCS;
+
+    static {
+        Gauge.builder("stream.subscribers", SUBSCRIBERS, AtomicInteger::get)
+            .description("Clients connected to /api/stream")
+            .register(MetricsConfig.registry());
+        COALESCED = Counter.builder("stream.deltas.coalesced")
+            .description("Queued deltas replaced by a newer one for the same entity before a slow client got them")
+            .register(MetricsConfig.registry());
+        RESYNCS = Counter.builder("stream.resyncs")
+            .description("Slow clients whose queue overflowed and were told to reload")
+            .register(MetricsConfig.registry());
+    }
+
+    // Only touched from this instance's event loop
+    private final Set<Subscriber> subscribers = new HashSet<>();
+
+    public StreamRoutes(Vertx vertx, Router router) {
+        router.get("/api/stream").handler(this::subscribe);
+
+        vertx.eventBus().<JsonObject>localConsumer(ADDRESS, message -> {
+            JsonObject body = message.body();
+            Delta delta = new Delta(body.getString("type"), body.getString("key"), body.getJsonObject("data"));
+            for (Subscriber subscriber : subscribers) {
+                subscriber.send(delta);
+            }
+        });
+        vertx.setPeriodic(HEARTBEAT_MS, id -> {
+            for (Subscriber subscriber : subscribers) {
+                subscriber.heartbeat();
+            }
+        });
+    }
+
+    /**
+     * Sends {@code data} to every subscriber in this process as a {@code type} event. {@code key}
+     * names the entity, so a slow client only gets the latest delta for it.
+     */
+    public static void publish(Vertx vertx, String type, String key, JsonObject data) {
+        vertx.eventBus().publish(ADDRESS, new JsonObject().put("type", type).put("key", key).put("data", data));
+    }
+
+    private void subscribe(RoutingContext ctx) {
+        if ("websocket".equalsIgnoreCase(ctx.request().getHeader(HttpHeaders.UPGRADE))) {
+            ctx.request().toWebSocket()
+                .onSuccess(ws -> {
+                    WebSocketSubscriber subscriber = new WebSocketSubscriber(ws);
+                    ws.closeHandler(v -> remove(subscriber));
+                    ws.exceptionHandler(err -> ws.close());
+                    add(subscriber);
+                })
+                .onFailure(err -> logger.debug("WebSocket upgrade failed", err));
+            return;
+        }
+
+        HttpServerResponse response = ctx.response()
+            .setChunked(true)
+            .putHeader(HttpHeaders.CONTENT_TYPE, "text/event-stream")
+            .putHeader(HttpHeaders.CACHE_CONTROL, "no-cache")
+            // Events are small and must go out as they are written, not when a compressor fills up
+            .putHeader(HttpHeaders.CONTENT_ENCODING, HttpHeaders.IDENTITY);
+        SseSubscriber subscriber = new SseSubscriber(response);
+        response.closeHandler(v -> remove(subscriber));
+        response.exceptionHandler(err -> response.reset());
+        response.write("retry: 3000\n\n");
+        add(subscriber);
+    }
+
+    private void add(Subscriber subscriber) {
+        subscribers.add(subscriber);
+        SUBSCRIBERS.incrementAndGet();
+    }
+
+    private void remove(Subscriber subscriber) {
+        if (subscribers.remove(subscriber)) {
+            SUBSCRIBERS.decrementAndGet();
+        }
+    }
+
+    private static final class Delta {
+        final String key;
+        // Encoded once and shared by every subscriber; writing a Buffer doesn't consume it
+        final Buffer sseFrame;
+        final String webSocketMessage;
+
+        Delta(String type, String key, JsonObject data) {
+            this.key = key;
+            this.sseFrame = Buffer.buffer("event: " + type + "\ndata: " + data.encode() + "\n\n");
+            this.webSocketMessage = new JsonObject().put("type", type).put("data", data).encode();
+        }
+    }
+
+    private abstract static class Subscriber {
+        private final WriteStream<?> connection;
+        // Deltas held back while the connection's write queue is full, oldest entity first
+        private LinkedHashMap<String, Delta> pending;
+        private boolean resync;
+
+        Subscriber(WriteStream<?> connection) {
+            this.connection = connection;
+        }
+
+        abstract void write(Delta delta);
+
+        abstract void heartbeat();
+
+        void send(Delta delta) {
+            if (pending == null) {
+                if (!connection.writeQueueFull()) {
+                    write(delta);
+                    return;
+                }
+                pending = new LinkedHashMap<>();
+                connection.drainHandler(v -> flush());
+            }
+            if (resync) {
+                return;
+            }
+            // Moved to the end: the entity changed after everything queued before it
+            if (pending.remove(delta.key) != null) {
+                COALESCED.increment();
+            }
+            pending.put(delta.key, delta);
+            if (pending.size() > MAX_PENDING) {
+                pending.clear();
+                resync = true;
+                RESYNCS.increment();
+            }
+        }
+
+        private void flush() {
+            if (resync) {
+                write(RESYNC);
+                resync = false;
+            }
+            Iterator<Delta> queued = pending.values().iterator();
+            while (queued.hasNext() && !connection.writeQueueFull()) {
+                write(queued.next());
+                queued.remove();
+            }
+            if (pending.isEmpty()) {
+                pending = null;
+                connection.drainHandler(null);
+            }
+        }
+    }
+
+    private static final class SseSubscriber extends Subscriber {
+        private final HttpServerResponse response;
+
+        SseSubscriber(HttpServerResponse response) {
+            super(response);
+            this.response = response;
+        }
+
+        @Override
+        void write(Delta delta) {
+            response.write(delta.sseFrame);
+        }
+
+        @Override
+        void heartbeat() {
+            if (!response.writeQueueFull()) {
+                response.write(HEARTBEAT);
+            }
+        }
+    }
+
+    private static final class WebSocketSubscriber extends Subscriber {
+        private final ServerWebSocket ws;
+
+        WebSocketSubscriber(ServerWebSocket ws) {
+            super(ws);
+            this.ws = ws;
+        }
+
+        @Override
+        void write(Delta delta) {
+            ws.writeTextMessage(delta.webSocketMessage);
+        }
+
+        @Override
+        void heartbeat() {
+            if (!ws.writeQueueFull()) {
+                ws.writePing(Buffer.buffer());
+            }
+        }
+    }
+}
@@ -1,48 +1,95 @@
 package com.salesmanagement.utils;
 
-import io.vertx.core.json.JsonObject;
-import io.vertx.ext.auth.JWTOptions;
-import io.vertx.ext.auth.PubSecKeyOptions;
-import io.vertx.ext.auth.jwt.JWTAuth;
-import io.vertx.ext.auth.jwt.JWTAuthOptions;
-
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
 import java.util.Base64;
 
+/**
+ * Token and password helpers. The password functions are deliberately slow and must not be
+ * called on an event loop; use {@link PasswordService} from request handlers.
+ */
 public class AuthUtils {
-    private static final String SECRET_KEY = System.getenv().getOrDefault("JWT_SECRET", "your-secret-key-change-in-production");
-    private static final long TOKEN_EXPIRY = 86400000L; // 24 hours
-
-    public static JWTAuth createJwtAuth() {
-        return JWTAuth.create(null, new JWTAuthOptions()
-            .addPubSecKey(new PubSecKeyOptions()
-                .setAlgorithm("HS256")
-                .setBuffer(SECRET_KEY)));
-    }
+    private static final String HASH_PREFIX = "pbkdf2-sha256";
+    private static final int HASH_ITERATIONS = Integer.parseInt(System.getenv().getOrDefault("PASSWORD_HASH_ITERATIONS", "600000"));
+    private static final int SALT_BYTES = 16;
+    private static final int KEY_BITS = 256;
+    private static final SecureRandom RANDOM = new SecureRandom();
 
     public static String generateToken(Integer userId, String email) {
-        JWTAuth jwtAuth = createJwtAuth();
-        JsonObject claims = new JsonObject()
-            .put("sub", userId.toString())
-            .put("email", email);
-        
-        return jwtAuth.generateToken(claims, new JWTOptions().setExpiresInSeconds(TOKEN_EXPIRY / 1000));
+        return TokenService.getInstance().generateToken(userId, email);
     }
 
+    /**
+     * Hashes with PBKDF2-HMAC-SHA256 and a random salt. The result is self-describing:
+     * {@code pbkdf2-sha256$<iterations>$<salt>$<hash>}, so the cost can be raised later
+     * without invalidating stored hashes.
+     */
     public static String hashPassword(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        byte[] hash = pbkdf2(password, salt, HASH_ITERATIONS);
+        return HASH_PREFIX + "$" + HASH_ITERATIONS
+            + "$" + Base64.getEncoder().encodeToString(salt)
+            + "$" + Base64.getEncoder().encodeToString(hash);
+    }
+
+    /**
+     * Checks {@code password} against a stored hash in either the PBKDF2 format or the
+     * legacy unsalted SHA-256 format.
+     */
+    public static boolean verifyPassword(String password, String storedHash) {
+        if (storedHash == null) {
+            return false;
+        }
+        if (!storedHash.startsWith(HASH_PREFIX + "$")) {
+            return MessageDigest.isEqual(
+                legacyHash(password).getBytes(StandardCharsets.UTF_8),
+                storedHash.getBytes(StandardCharsets.UTF_8));
+        }
+
+        String[] parts = storedHash.split("\\$");
+        if (parts.length != 4) {
+            return false;
+        }
+        int iterations = Integer.parseInt(parts[1]);
+        byte[] salt = Base64.getDecoder().decode(parts[2]);
+        byte[] expected = Base64.getDecoder().decode(parts[3]);
+        return MessageDigest.isEqual(pbkdf2(password, salt, iterations), expected);
+    }
+
+    /**
+     * True for legacy SHA-256 hashes and PBKDF2 hashes weaker than the current iteration count.
+     */
+    public static boolean needsRehash(String storedHash) {
+        if (storedHash == null || !storedHash.startsWith(HASH_PREFIX + "$")) {
+            return true;
+        }
+        String[] parts = storedHash.split("\\$");
+        return parts.length != 4 || Integer.parseInt(parts[1]) < HASH_ITERATIONS;
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, KEY_BITS);
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Error hashing password", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private static String legacyHash(String password) {
         try {
             MessageDigest digest = MessageDigest.getInstance("SHA-256");
             byte[] hash = digest.digest(password.getBytes(StandardCharsets.UTF_8));
             return Base64.getEncoder().encodeToString(hash);
-        } catch (NoSuchAlgorithmException e) {
+        } catch (GeneralSecurityException e) {
             throw new RuntimeException("Error hashing password", e);
         }
     }
-
-    public static boolean verifyPassword(String password, String hash) {
-        String passwordHash = hashPassword(password);
-        return passwordHash.equals(hash);
-    }
 }
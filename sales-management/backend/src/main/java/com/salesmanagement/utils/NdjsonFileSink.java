@@ -0,0 +1,77 @@
+package com.salesmanagement.utils;
+
+import io.vertx.core.json.JsonObject;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Append-only newline-delimited JSON file. When the next batch would push the current file past
+ * {@code maxBytes} it is renamed to {@code <name>-<epoch millis>.ndjson} and a new one is started,
+ * so rotated files sort in write order. Writes block until the data is on disk; call it from a
+ * worker thread.
+ */
+public class NdjsonFileSink implements Closeable {
+    private final Path directory;
+    private final String name;
+    private final long maxBytes;
+    private FileChannel channel;
+    private long size;
+
+    public NdjsonFileSink(Path directory, String name, long maxBytes) {
+        this.directory = directory;
+        this.name = name;
+        this.maxBytes = maxBytes;
+    }
+
+    public synchronized void append(List<JsonObject> records) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (JsonObject record : records) {
+            lines.append(record.encode()).append('\n');
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        if (channel == null) {
+            open();
+        }
+        if (size > 0 && size + bytes.remaining() > maxBytes) {
+            rotate();
+        }
+        while (bytes.hasRemaining()) {
+            size += channel.write(bytes);
+        }
+        channel.force(false);
+    }
+
+    private void open() throws IOException {
+        Files.createDirectories(directory);
+        channel = FileChannel.open(current(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        size = channel.size();
+    }
+
+    private void rotate() throws IOException {
+        channel.close();
+        channel = null;
+        Files.move(current(), directory.resolve(name + "-" + System.currentTimeMillis() + ".ndjson"), StandardCopyOption.ATOMIC_MOVE);
+        open();
+    }
+
+    private Path current() {
+        return directory.resolve(name + ".ndjson");
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+}
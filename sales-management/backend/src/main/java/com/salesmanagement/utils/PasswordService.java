@@ -0,0 +1,66 @@
+package com.salesmanagement.utils;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs password hashing on a dedicated, process-wide worker pool so KDF work never blocks an
+ * event loop or competes with the default worker pool. Once too many jobs are waiting, new ones
+ * fail fast with {@link BusyException} instead of queueing.
+ */
+public class PasswordService {
+    private static final String POOL_NAME = "password-hashing";
+    private static final int POOL_SIZE = Integer.parseInt(System.getenv().getOrDefault("PASSWORD_HASH_WORKERS",
+        String.valueOf(Runtime.getRuntime().availableProcessors())));
+    private static final int MAX_PENDING = Integer.parseInt(System.getenv().getOrDefault("PASSWORD_HASH_MAX_PENDING",
+        String.valueOf(POOL_SIZE * 16)));
+    // Shared by every instance, like the named worker pool itself
+    private static final AtomicInteger PENDING = new AtomicInteger();
+
+    private final WorkerExecutor executor;
+
+    public PasswordService(Vertx vertx) {
+        this.executor = vertx.createSharedWorkerExecutor(POOL_NAME, POOL_SIZE);
+    }
+
+    public Future<String> hash(String password) {
+        return submit(() -> AuthUtils.hashPassword(password));
+    }
+
+    /**
+     * Verifies {@code password}; a {@code null} hash always fails but costs the same as a real check.
+     */
+    public Future<Boolean> verify(String password, String storedHash) {
+        return submit(() -> {
+            if (storedHash == null) {
+                AuthUtils.verifyPassword(password, DummyHash.VALUE);
+                return false;
+            }
+            return AuthUtils.verifyPassword(password, storedHash);
+        });
+    }
+
+    private <T> Future<T> submit(Callable<T> task) {
+        if (PENDING.incrementAndGet() > MAX_PENDING) {
+            PENDING.decrementAndGet();
+            return Future.failedFuture(new BusyException());
+        }
+        return executor.<T>executeBlocking(task, false)
+            .onComplete(ar -> PENDING.decrementAndGet());
+    }
+
+    // Initialized lazily on a worker thread, on the first lookup of an unknown email
+    private static final class DummyHash {
+        private static final String VALUE = AuthUtils.hashPassword("dummy-password");
+    }
+
+    public static class BusyException extends RuntimeException {
+        public BusyException() {
+            super("Too many authentication requests, try again shortly", null, false, false);
+        }
+    }
+}
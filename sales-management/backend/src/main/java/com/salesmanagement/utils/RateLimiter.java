@@ -0,0 +1,91 @@
+package com.salesmanagement.utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-key token buckets allowing {@code limit} requests per {@code period}, with bursts of up to
+ * {@code limit}. Each bucket is a single {@link AtomicLong} holding the time it will next be full
+ * (the GCRA form of a token bucket), so taking a token is one CAS and no lock is held. Buckets live
+ * in a {@link ConcurrentHashMap}, whose lookups don't lock and whose inserts only lock one bin.
+ * Safe to share between event loops.
+ */
+public class RateLimiter {
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    public RateLimiter(int limit, long period, TimeUnit unit) {
+        if (limit <= 0 || period <= 0) {
+            throw new IllegalArgumentException("Rate limit and period must be positive");
+        }
+        this.intervalNanos = unit.toNanos(period) / limit;
+        this.burstNanos = intervalNanos * limit;
+    }
+
+    /**
+     * Parses {@code "<requests>/<seconds>"}, e.g. {@code "10/60"}; {@code "0"} means no limit and
+     * returns null.
+     */
+    public static RateLimiter fromSpec(String spec) {
+        if ("0".equals(spec.trim())) {
+            return null;
+        }
+        String[] parts = spec.trim().split("/");
+        try {
+            if (parts.length != 2) {
+                throw new NumberFormatException();
+            }
+            return new RateLimiter(Integer.parseInt(parts[0].trim()), Long.parseLong(parts[1].trim()), TimeUnit.SECONDS);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Rate limit must look like <requests>/<seconds>: " + spec);
+        }
+    }
+
+    public long tryAcquire(String key) {
+        return tryAcquire(key, System.nanoTime());
+    }
+
+    /**
+     * Takes a token from {@code key}'s bucket. Returns 0 if one was available, otherwise how many
+     * nanoseconds until one will be; nothing is taken then.
+     */
+    public long tryAcquire(String key, long now) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+        }
+        while (true) {
+            long fullAt = bucket.get();
+            long next = Math.max(fullAt, now) + intervalNanos;
+            long over = next - now - burstNanos;
+            if (over > 0) {
+                return over;
+            }
+            if (bucket.compareAndSet(fullAt, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Drops the buckets that have refilled completely; they behave exactly like new ones. A
+     * request racing with the removal may go uncounted, which lets at most one extra through.
+     */
+    public int evictIdle() {
+        long now = System.nanoTime();
+        int evicted = 0;
+        for (Map.Entry<String, AtomicLong> entry : buckets.entrySet()) {
+            if (entry.getValue().get() - now <= 0 && buckets.remove(entry.getKey(), entry.getValue())) {
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+}
@@ -0,0 +1,189 @@
+package com.salesmanagement.utils;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.auth.JWTOptions;
+import io.vertx.ext.auth.PubSecKeyOptions;
+import io.vertx.ext.auth.User;
+import io.vertx.ext.auth.authentication.Credentials;
+import io.vertx.ext.auth.authentication.TokenCredentials;
+import io.vertx.ext.auth.jwt.JWTAuth;
+import io.vertx.ext.auth.jwt.JWTAuthOptions;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide JWT issuer and verifier. The signing key is parsed once and the resulting
+ * {@link JWTAuth} is shared by every verticle instance. Verified tokens are remembered, by hash,
+ * until they expire so repeat requests with the same bearer token skip signature checks and JSON
+ * parsing.
+ */
+public class TokenService {
+    private static final String SECRET_KEY = System.getenv().getOrDefault("JWT_SECRET", "your-secret-key-change-in-production");
+    private static final int TOKEN_EXPIRY_SECONDS = 86400; // 24 hours
+    private static final int CACHE_MAX_ENTRIES = Integer.parseInt(System.getenv().getOrDefault("JWT_CACHE_MAX_ENTRIES", "10000"));
+    private static final TokenService INSTANCE = new TokenService(createJwtAuth(), CACHE_MAX_ENTRIES);
+
+    private final JWTAuth jwtAuth;
+    private final int maxEntries;
+    // Keyed by the token's SHA-256, so the cache never holds usable bearer tokens. Hashing is still
+    // far cheaper than the HMAC check and claims parsing it stands in for
+    private final ConcurrentHashMap<String, VerifiedToken> verified = new ConcurrentHashMap<>();
+    // No entry expires before this, so a full cache only sweeps once something can have expired
+    private volatile long earliestExpiryMillis = Long.MAX_VALUE;
+    private final JWTAuth cachingAuth = new CachingJwtAuth();
+
+    public TokenService(JWTAuth jwtAuth, int maxEntries) {
+        this.jwtAuth = jwtAuth;
+        this.maxEntries = maxEntries;
+    }
+
+    public static TokenService getInstance() {
+        return INSTANCE;
+    }
+
+    public static JWTAuth createJwtAuth() {
+        return JWTAuth.create(null, new JWTAuthOptions()
+            .addPubSecKey(new PubSecKeyOptions()
+                .setAlgorithm("HS256")
+                .setBuffer(SECRET_KEY)));
+    }
+
+    public String generateToken(Integer userId, String email) {
+        JsonObject claims = new JsonObject()
+            .put("sub", userId.toString())
+            .put("email", email);
+
+        return jwtAuth.generateToken(claims, new JWTOptions().setExpiresInSeconds(TOKEN_EXPIRY_SECONDS));
+    }
+
+    /**
+     * Verifies {@code token}, consulting the cache of previously verified tokens first.
+     */
+    public Future<User> verify(String token) {
+        String key = sha256(token);
+        VerifiedToken cached = verified.get(key);
+        if (cached != null) {
+            if (cached.expiresAtMillis > System.currentTimeMillis()) {
+                return Future.succeededFuture(cached.toUser());
+            }
+            verified.remove(key, cached);
+        }
+
+        return jwtAuth.authenticate(new TokenCredentials(token))
+            .onSuccess(user -> remember(key, user));
+    }
+
+    /**
+     * {@link JWTAuth} view of this service for {@code JWTAuthHandler}, verifying through the cache.
+     */
+    public JWTAuth authProvider() {
+        return cachingAuth;
+    }
+
+    private void remember(String key, User user) {
+        Long exp = user.attributes().getLong("exp");
+        if (exp == null) {
+            return;
+        }
+        long expiresAtMillis = exp * 1000;
+        if (verified.size() >= maxEntries) {
+            evictExpired();
+        }
+        if (verified.size() >= maxEntries) {
+            // Nothing has expired yet: drop whichever token the map yields first. Constant time
+            // and no lock, and an evicted token only costs one signature check on its next use.
+            Iterator<String> keys = verified.keySet().iterator();
+            if (keys.hasNext()) {
+                verified.remove(keys.next());
+            }
+        }
+        verified.put(key, new VerifiedToken(user.principal().copy(), user.attributes().copy(), expiresAtMillis));
+        if (expiresAtMillis < earliestExpiryMillis) {
+            earliestExpiryMillis = expiresAtMillis;
+        }
+    }
+
+    // Racing callers may both sweep or miss a just-added earlier expiry; either only costs a
+    // wasted sweep or an arbitrary eviction
+    private void evictExpired() {
+        long now = System.currentTimeMillis();
+        if (earliestExpiryMillis > now) {
+            return;
+        }
+        long earliest = Long.MAX_VALUE;
+        for (Iterator<VerifiedToken> tokens = verified.values().iterator(); tokens.hasNext(); ) {
+            long expiresAt = tokens.next().expiresAtMillis;
+            if (expiresAt <= now) {
+                tokens.remove();
+            } else if (expiresAt < earliest) {
+                earliest = expiresAt;
+            }
+        }
+        earliestExpiryMillis = earliest;
+    }
+
+    private static String sha256(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class VerifiedToken {
+        private final JsonObject principal;
+        private final JsonObject attributes;
+        private final long expiresAtMillis;
+
+        private VerifiedToken(JsonObject principal, JsonObject attributes, long expiresAtMillis) {
+            this.principal = principal;
+            this.attributes = attributes;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        // Users are mutable, so each request gets its own instance
+        private User toUser() {
+            return User.create(principal.copy(), attributes.copy());
+        }
+    }
+
+    private final class CachingJwtAuth implements JWTAuth {
+        @Override
+        public String generateToken(JsonObject claims, JWTOptions options) {
+            return jwtAuth.generateToken(claims, options);
+        }
+
+        @Override
+        public String generateToken(JsonObject claims) {
+            return jwtAuth.generateToken(claims);
+        }
+
+        @Override
+        public Future<User> authenticate(Credentials credentials) {
+            if (credentials instanceof TokenCredentials) {
+                return verify(((TokenCredentials) credentials).getToken());
+            }
+            return jwtAuth.authenticate(credentials);
+        }
+
+        @Override
+        public void authenticate(Credentials credentials, Handler<AsyncResult<User>> resultHandler) {
+            authenticate(credentials).onComplete(resultHandler);
+        }
+
+        @Override
+        @Deprecated
+        public void authenticate(JsonObject credentials, Handler<AsyncResult<User>> resultHandler) {
+            authenticate(new TokenCredentials(credentials)).onComplete(resultHandler);
+        }
+    }
+}
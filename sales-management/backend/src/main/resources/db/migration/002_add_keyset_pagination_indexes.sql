@@ -0,0 +1,3 @@
+-- Composite indexes backing keyset pagination on (created_at, id)
+CREATE INDEX IF NOT EXISTS idx_orders_created_at_id ON orders(created_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_customers_created_at_id ON customers(created_at DESC, id DESC);
@@ -0,0 +1,32 @@
+-- Normalized order lines, replacing the orders.items JSONB blob on the read and write paths
+CREATE TABLE IF NOT EXISTS order_items (
+    order_id INTEGER NOT NULL,
+    line_no INTEGER NOT NULL,
+    product_id INTEGER NOT NULL,
+    product_name VARCHAR(255) NOT NULL,
+    unit_price DECIMAL(10, 2) NOT NULL,
+    quantity INTEGER NOT NULL,
+    line_total DECIMAL(12, 2) NOT NULL,
+    PRIMARY KEY (order_id, line_no),
+    CONSTRAINT fk_order FOREIGN KEY (order_id) REFERENCES orders(id) ON DELETE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS idx_order_items_product_id ON order_items(product_id);
+
+-- Backfill from the JSONB column, keeping the original line order
+INSERT INTO order_items (order_id, line_no, product_id, product_name, unit_price, quantity, line_total)
+SELECT o.id,
+       e.line_no,
+       (e.item->>'productId')::INTEGER,
+       COALESCE(e.item->>'productName', ''),
+       (e.item->>'unitPrice')::DECIMAL(10, 2),
+       (e.item->>'quantity')::INTEGER,
+       COALESCE((e.item->>'lineTotal')::DECIMAL(12, 2),
+                (e.item->>'unitPrice')::DECIMAL(10, 2) * (e.item->>'quantity')::INTEGER)
+FROM orders o
+CROSS JOIN LATERAL jsonb_array_elements(o.items) WITH ORDINALITY AS e(item, line_no)
+WHERE o.items IS NOT NULL
+ON CONFLICT (order_id, line_no) DO NOTHING;
+
+-- New orders no longer write the blob; it is kept, nullable, until a later migration drops it
+ALTER TABLE orders ALTER COLUMN items DROP NOT NULL;
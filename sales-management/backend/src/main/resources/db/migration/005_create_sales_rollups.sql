@@ -0,0 +1,65 @@
+-- Pre-aggregated sales figures served by /api/reports/*
+
+CREATE TABLE IF NOT EXISTS sales_daily (
+    day DATE PRIMARY KEY,
+    order_count INTEGER NOT NULL DEFAULT 0,
+    revenue DECIMAL(14, 2) NOT NULL DEFAULT 0
+);
+
+CREATE TABLE IF NOT EXISTS sales_by_product (
+    product_id INTEGER PRIMARY KEY,
+    product_name VARCHAR(255) NOT NULL,
+    quantity BIGINT NOT NULL DEFAULT 0,
+    revenue DECIMAL(14, 2) NOT NULL DEFAULT 0
+);
+
+CREATE TABLE IF NOT EXISTS sales_by_customer (
+    customer_id INTEGER PRIMARY KEY,
+    customer_name VARCHAR(255) NOT NULL,
+    order_count INTEGER NOT NULL DEFAULT 0,
+    revenue DECIMAL(14, 2) NOT NULL DEFAULT 0
+);
+
+CREATE TABLE IF NOT EXISTS sales_by_category (
+    category VARCHAR(100) PRIMARY KEY,
+    quantity BIGINT NOT NULL DEFAULT 0,
+    revenue DECIMAL(14, 2) NOT NULL DEFAULT 0
+);
+
+-- Signed deltas written in the same transaction as each order insert/delete and folded into the
+-- rollups in batches by the background refresher. Rows with product_id NULL carry the order-level
+-- figures (order count and total); the others carry one order line each.
+CREATE TABLE IF NOT EXISTS sales_rollup_deltas (
+    id BIGSERIAL PRIMARY KEY,
+    day DATE NOT NULL,
+    customer_id INTEGER NOT NULL,
+    customer_name VARCHAR(255) NOT NULL,
+    product_id INTEGER,
+    product_name VARCHAR(255),
+    category VARCHAR(100),
+    quantity INTEGER NOT NULL DEFAULT 0,
+    revenue DECIMAL(14, 2) NOT NULL DEFAULT 0,
+    orders INTEGER NOT NULL DEFAULT 0
+);
+
+CREATE INDEX IF NOT EXISTS idx_sales_by_product_revenue ON sales_by_product(revenue DESC);
+CREATE INDEX IF NOT EXISTS idx_sales_by_customer_revenue ON sales_by_customer(revenue DESC);
+
+-- Initial fill from existing orders
+INSERT INTO sales_daily (day, order_count, revenue)
+SELECT created_at::DATE, COUNT(*), SUM(total) FROM orders GROUP BY created_at::DATE
+ON CONFLICT (day) DO NOTHING;
+
+INSERT INTO sales_by_product (product_id, product_name, quantity, revenue)
+SELECT product_id, MAX(product_name), SUM(quantity), SUM(line_total) FROM order_items GROUP BY product_id
+ON CONFLICT (product_id) DO NOTHING;
+
+INSERT INTO sales_by_customer (customer_id, customer_name, order_count, revenue)
+SELECT customer_id, MAX(customer_name), COUNT(*), SUM(total) FROM orders GROUP BY customer_id
+ON CONFLICT (customer_id) DO NOTHING;
+
+INSERT INTO sales_by_category (category, quantity, revenue)
+SELECT COALESCE(p.category, 'Uncategorized'), SUM(i.quantity), SUM(i.line_total)
+FROM order_items i LEFT JOIN products p ON p.id = i.product_id
+GROUP BY COALESCE(p.category, 'Uncategorized')
+ON CONFLICT (category) DO NOTHING;
@@ -0,0 +1,11 @@
+-- Indexes backing product and customer search. The trigram GIN indexes serve the
+-- ILIKE '%term%' matches on q/company (terms of 3+ characters); the btree indexes serve
+-- the exact category and price range filters.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX IF NOT EXISTS idx_products_name_trgm ON products USING GIN (name gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_products_category_id ON products(category, id);
+CREATE INDEX IF NOT EXISTS idx_products_price ON products(price);
+
+CREATE INDEX IF NOT EXISTS idx_customers_name_trgm ON customers USING GIN (name gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_customers_company_trgm ON customers USING GIN (company gin_trgm_ops);
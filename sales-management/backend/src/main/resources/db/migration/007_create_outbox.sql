@@ -0,0 +1,11 @@
+-- Change events written in the same statement or transaction as each product, customer and
+-- order write, and drained in id order by the background outbox relay, which deletes them once
+-- they are published. payload is the row as written (as deleted, for deletes).
+CREATE TABLE IF NOT EXISTS outbox_events (
+    id BIGSERIAL PRIMARY KEY,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    aggregate VARCHAR(50) NOT NULL,
+    aggregate_id INTEGER NOT NULL,
+    type VARCHAR(50) NOT NULL,
+    payload JSONB NOT NULL
+);
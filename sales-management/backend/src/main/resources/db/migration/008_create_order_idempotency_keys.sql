@@ -0,0 +1,16 @@
+-- Idempotency-Key values sent with POST /api/orders, per user, with the response they produced.
+-- A key is claimed in the same transaction that places its order, so a retry arriving while the
+-- first attempt is still running waits on the row and then replays the committed response.
+-- IdempotencyKeyExpiryVerticle deletes rows older than IDEMPOTENCY_KEY_TTL_HOURS.
+CREATE TABLE IF NOT EXISTS order_idempotency_keys (
+    user_id INTEGER NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    idempotency_key VARCHAR(255) NOT NULL,
+    -- SHA-256 of the request body, to reject a key reused for a different order
+    request_hash CHAR(64) NOT NULL,
+    order_id INTEGER,
+    response JSONB,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (user_id, idempotency_key)
+);
+
+CREATE INDEX IF NOT EXISTS idx_order_idempotency_keys_created_at ON order_idempotency_keys (created_at);
@@ -0,0 +1,18 @@
+-- Customers whose orders may hold an outdated customer_name/customer_email. Written in the same
+-- statement as each customer update; a repeat edit before the background sync gets to it only
+-- takes a new generation, so one pass applies the latest values. The sync deletes the row only if
+-- its generation is unchanged, so an edit made mid-pass is picked up again.
+CREATE SEQUENCE IF NOT EXISTS customer_order_sync_generation;
+
+CREATE TABLE IF NOT EXISTS customer_order_sync (
+    customer_id INTEGER PRIMARY KEY REFERENCES customers(id) ON DELETE CASCADE,
+    generation BIGINT NOT NULL DEFAULT nextval('customer_order_sync_generation'),
+    queued_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_customer_order_sync_queued_at ON customer_order_sync (queued_at);
+
+-- Lets the sync walk a customer's orders in keyset chunks instead of rescanning them per chunk.
+-- It leads with customer_id, so it also serves every lookup idx_orders_customer_id did.
+CREATE INDEX IF NOT EXISTS idx_orders_customer_created_at_id ON orders (customer_id, created_at DESC, id DESC);
+DROP INDEX IF EXISTS idx_orders_customer_id;
@@ -0,0 +1,7 @@
+-- Indexes backing the prefix match q/company use for 1-2 character terms, which are too short
+-- for the trigram indexes from 006. text_pattern_ops lets lower(...) LIKE 'ab%' use them
+-- whatever the database collation is.
+CREATE INDEX IF NOT EXISTS idx_products_name_lower_prefix ON products(lower(name) text_pattern_ops);
+
+CREATE INDEX IF NOT EXISTS idx_customers_name_lower_prefix ON customers(lower(name) text_pattern_ops);
+CREATE INDEX IF NOT EXISTS idx_customers_company_lower_prefix ON customers(lower(company) text_pattern_ops);
@@ -0,0 +1,21 @@
+-- The category each order line was sold under, recorded when the order is placed. Rollup deltas
+-- read it from here, so deleting an order takes its revenue back from the category that got it,
+-- even if the product was re-categorized or deleted in between.
+ALTER TABLE order_items ADD COLUMN IF NOT EXISTS category VARCHAR(100);
+
+UPDATE order_items i SET category = p.category
+FROM products p
+WHERE p.id = i.product_id AND i.category IS NULL;
+
+-- Earlier deletes may have taken revenue from the wrong category, so rebuild the category rollup
+-- from the lines that exist. Deltas still queued are subtracted, as the refresher adds them later.
+DELETE FROM sales_by_category;
+
+INSERT INTO sales_by_category (category, quantity, revenue)
+SELECT category, SUM(quantity), SUM(revenue)
+FROM (
+    SELECT COALESCE(category, 'Uncategorized') AS category, quantity, line_total AS revenue FROM order_items
+    UNION ALL
+    SELECT COALESCE(category, 'Uncategorized'), -quantity, -revenue FROM sales_rollup_deltas WHERE product_id IS NOT NULL
+) lines
+GROUP BY category;
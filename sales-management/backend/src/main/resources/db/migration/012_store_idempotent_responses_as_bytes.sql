@@ -0,0 +1,5 @@
+-- Idempotent retries replay the stored response. JSONB re-orders keys and rewrites numbers, so the
+-- replay came back different from the first answer; the encoded body is now kept byte for byte.
+-- Rows written before this keep JSONB's text form until they expire.
+ALTER TABLE order_idempotency_keys
+    ALTER COLUMN response TYPE BYTEA USING convert_to(response::text, 'UTF8');
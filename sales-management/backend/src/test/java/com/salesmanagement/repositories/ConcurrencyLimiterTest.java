@@ -0,0 +1,150 @@
+package com.salesmanagement.repositories;
+
+import com.salesmanagement.repositories.ConcurrencyLimiter.Priority;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives a limiter of 2 to 10 slots, queue factor 4 and latency tolerance 2 on a fake clock.
+ * Operations are promises completed by the test, so it decides how long each one takes and how
+ * many overlap. Off a vert.x context, queued operations start on the thread that frees the slot.
+ */
+class ConcurrencyLimiterTest {
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long WINDOW = 100 * MILLIS;
+
+    private long now;
+    private final ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 10, 4, 2, () -> now);
+
+    @Test
+    void backsOffAfterSlowWindow() {
+        window(1);
+        assertEquals(10, limiter.currentLimit());
+
+        window(5);
+        assertEquals(9, limiter.currentLimit());
+
+        window(5);
+        assertEquals(8, limiter.currentLimit());
+    }
+
+    @Test
+    void growsOnlyWhenCallsQueued() {
+        window(1);
+        window(5);
+        assertEquals(9, limiter.currentLimit());
+
+        // Fast, but never more than one call at a time
+        window(1);
+        assertEquals(9, limiter.currentLimit());
+
+        // Fast, with one of ten calls waiting for a slot
+        now += WINDOW;
+        List<Promise<Void>> running = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            limiter.run(Priority.NORMAL, true, pending(running));
+        }
+        assertEquals(9, running.size());
+        now += MILLIS;
+        for (int i = 0; i < 9; i++) {
+            running.get(i).complete();
+        }
+        assertEquals(10, running.size());
+        now += MILLIS;
+        running.get(9).complete();
+        assertEquals(10, limiter.currentLimit());
+    }
+
+    @Test
+    void neverBacksOffBelowMinimum() {
+        window(1);
+        for (int i = 0; i < 30; i++) {
+            window(50);
+        }
+        assertEquals(2, limiter.currentLimit());
+    }
+
+    @Test
+    void highPriorityOvertakesQueuedLow() {
+        List<Promise<Void>> running = fill();
+        List<String> started = new ArrayList<>();
+        limiter.run(Priority.LOW, true, () -> {
+            started.add("low");
+            return Future.succeededFuture();
+        });
+        limiter.run(Priority.NORMAL, true, () -> {
+            started.add("normal");
+            return Future.succeededFuture();
+        });
+        limiter.run(Priority.HIGH, true, () -> {
+            started.add("high");
+            return Future.succeededFuture();
+        });
+        assertTrue(started.isEmpty());
+
+        running.get(0).complete();
+        assertEquals(List.of("high", "normal", "low"), started);
+    }
+
+    @Test
+    void rejectsOnceQueueBudgetIsSpent() {
+        fill();
+        List<Promise<Void>> queued = new ArrayList<>();
+        // LOW gets half of limit (10) x queue factor (4)
+        for (int i = 0; i < 20; i++) {
+            assertFalse(limiter.run(Priority.LOW, true, pending(queued)).failed());
+        }
+        Future<Void> rejected = limiter.run(Priority.LOW, true, pending(queued));
+        assertTrue(rejected.failed());
+        assertInstanceOf(ConcurrencyLimiter.OverloadedException.class, rejected.cause());
+
+        // NORMAL calls don't wait behind LOW ones, so they still have their whole budget
+        for (int i = 0; i < 40; i++) {
+            assertFalse(limiter.run(Priority.NORMAL, true, pending(queued)).failed());
+        }
+        assertTrue(limiter.run(Priority.NORMAL, true, pending(queued)).failed());
+        assertTrue(queued.isEmpty());
+    }
+
+    /**
+     * One full sampling window of calls taking {@code latencyMillis} each, one at a time.
+     */
+    private void window(long latencyMillis) {
+        now += WINDOW;
+        for (int i = 0; i < 10; i++) {
+            List<Promise<Void>> running = new ArrayList<>(1);
+            limiter.run(Priority.NORMAL, true, pending(running));
+            now += latencyMillis * MILLIS;
+            running.get(0).complete();
+        }
+    }
+
+    // Takes all ten slots with calls that only finish when the test completes them
+    private List<Promise<Void>> fill() {
+        List<Promise<Void>> running = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            limiter.run(Priority.NORMAL, true, pending(running));
+        }
+        assertEquals(10, running.size());
+        return running;
+    }
+
+    private static Supplier<Future<Void>> pending(List<Promise<Void>> started) {
+        return () -> {
+            Promise<Void> promise = Promise.promise();
+            started.add(promise);
+            return promise.future();
+        };
+    }
+}
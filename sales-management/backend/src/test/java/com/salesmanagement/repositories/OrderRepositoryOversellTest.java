@@ -0,0 +1,116 @@
+package com.salesmanagement.repositories;
+
+import com.salesmanagement.config.DatabaseConfig;
+import com.salesmanagement.config.MigrationRunner;
+import com.salesmanagement.models.Order;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import io.vertx.pgclient.PgConnectOptions;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.PoolOptions;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.Tuple;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Fires concurrent orders at a product with less stock than they ask for, against a real Postgres
+ * reached through the {@code DB_*} settings (e.g. the docker-compose database). The test creates
+ * and drops its own {@code sales_management_test} database, and is skipped when no server answers.
+ */
+@ExtendWith(VertxExtension.class)
+class OrderRepositoryOversellTest {
+    private static final String DATABASE = "sales_management_test";
+    private static final int STOCK = 15;
+    // Stays under the concurrency limiter's queue budget, so every order reaches the stock check
+    private static final int ORDERS = 40;
+
+    private static PgPool admin;
+    private static PgPool db;
+
+    @BeforeAll
+    static void createDatabase(Vertx vertx) throws Exception {
+        admin = PgPool.pool(vertx, DatabaseConfig.connectOptions().setDatabase("postgres"), new PoolOptions().setMaxSize(1));
+        try {
+            admin.query("DROP DATABASE IF EXISTS " + DATABASE).execute()
+                .compose(v -> admin.query("CREATE DATABASE " + DATABASE).execute())
+                .toCompletionStage().toCompletableFuture().get(30, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            admin.close();
+            Assumptions.assumeTrue(false, "No Postgres available for integration tests: " + e.getMessage());
+        }
+        PgConnectOptions options = DatabaseConfig.connectOptions().setDatabase(DATABASE);
+        db = PgPool.pool(vertx, options, new PoolOptions().setMaxSize(DatabaseConfig.poolSize()));
+        MigrationRunner.migrate(vertx, db).toCompletionStage().toCompletableFuture().get(60, TimeUnit.SECONDS);
+    }
+
+    @AfterAll
+    static void dropDatabase() throws Exception {
+        if (db != null) {
+            db.close()
+                .compose(v -> admin.query("DROP DATABASE IF EXISTS " + DATABASE).execute())
+                .eventually(() -> admin.close())
+                .toCompletionStage().toCompletableFuture().get(30, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void concurrentOrdersNeverOversell(Vertx vertx, VertxTestContext testContext) {
+        OrderRepository orders = new OrderRepository(db);
+        AtomicInteger created = new AtomicInteger();
+        AtomicInteger outOfStock = new AtomicInteger();
+
+        db.preparedQuery("INSERT INTO products (name, price, stock) VALUES ('Contended', 10.00, $1) RETURNING id")
+            .execute(Tuple.of(STOCK))
+            .compose(product -> db.preparedQuery("INSERT INTO customers (name, email) VALUES ('Buyer', 'buyer@example.com') RETURNING id")
+                .execute()
+                .map(customer -> new Integer[] {product.iterator().next().getInteger("id"), customer.iterator().next().getInteger("id")}))
+            .compose(ids -> {
+                List<Future<Order>> placed = new ArrayList<>(ORDERS);
+                for (int i = 0; i < ORDERS; i++) {
+                    Order order = new Order();
+                    order.setCustomerId(ids[1]);
+                    order.setCustomerName("Buyer");
+                    order.setItems(List.of(new Order.OrderItem(ids[0], null, null, 1, null)));
+                    placed.add(orders.create(order)
+                        .onSuccess(o -> created.incrementAndGet())
+                        .recover(err -> {
+                            if (err instanceof OrderRepository.InsufficientStockException) {
+                                outOfStock.incrementAndGet();
+                                return Future.succeededFuture();
+                            }
+                            return Future.failedFuture(err);
+                        }));
+                }
+                return Future.all(placed).map(ids[0]);
+            })
+            .compose(productId -> db.preparedQuery("SELECT p.stock,"
+                    + " (SELECT count(*) FROM orders)::int AS orders,"
+                    + " (SELECT COALESCE(SUM(quantity), 0)::int FROM order_items WHERE product_id = p.id) AS sold"
+                    + " FROM products p WHERE p.id = $1")
+                .execute(Tuple.of(productId)))
+            .onComplete(testContext.succeeding(rows -> testContext.verify(() -> {
+                Row row = rows.iterator().next();
+                assertEquals(STOCK, created.get(), "orders placed");
+                assertEquals(ORDERS - STOCK, outOfStock.get(), "orders rejected for stock");
+                assertTrue(row.getInteger("stock") >= 0, "stock went negative");
+                assertEquals(0, row.getInteger("stock"), "remaining stock");
+                assertEquals(STOCK, row.getInteger("orders"), "order rows");
+                assertEquals(STOCK, row.getInteger("sold"), "units sold");
+                testContext.completeNow();
+            })));
+    }
+}
@@ -0,0 +1,89 @@
+package com.salesmanagement.repositories;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Lookups are promises the test completes, so it controls which ones are still in flight.
+ */
+class SingleFlightTest {
+    private final SingleFlight<Integer, String> flights = new SingleFlight<>("SingleFlightTest", "lookup", TableVersion.PRODUCTS);
+    private final List<Promise<String>> queries = new ArrayList<>();
+
+    @Test
+    void joinsLookupInFlight() {
+        Future<String> first = flights.run(1, query());
+        Future<String> second = flights.run(1, query());
+        assertEquals(1, queries.size());
+        assertFalse(second.isComplete());
+
+        queries.get(0).complete("one");
+        assertEquals("one", first.result());
+        assertSame(first.result(), second.result());
+    }
+
+    @Test
+    void keysHaveSeparateFlights() {
+        flights.run(1, query());
+        flights.run(2, query());
+        assertEquals(2, queries.size());
+    }
+
+    @Test
+    void startsAgainOnceCompleted() {
+        flights.run(1, query());
+        queries.get(0).complete("old");
+
+        Future<String> next = flights.run(1, query());
+        assertEquals(2, queries.size());
+        queries.get(1).complete("new");
+        assertEquals("new", next.result());
+    }
+
+    @Test
+    void writeStartsFreshFlight() {
+        Future<String> before = flights.run(1, query());
+        TableVersion.PRODUCTS.bump();
+        Future<String> after = flights.run(1, query());
+        assertEquals(2, queries.size());
+
+        // Callers arriving after the write join the newer flight
+        Future<String> joined = flights.run(1, query());
+        assertEquals(2, queries.size());
+        queries.get(1).complete("new");
+        queries.get(0).complete("old");
+        assertEquals("old", before.result());
+        assertEquals("new", after.result());
+        assertEquals("new", joined.result());
+    }
+
+    @Test
+    void sharesFailureThenRetries() {
+        Future<String> first = flights.run(1, query());
+        Future<String> second = flights.run(1, query());
+        queries.get(0).fail(new IllegalStateException("down"));
+        assertTrue(first.failed());
+        assertSame(first.cause(), second.cause());
+
+        flights.run(1, query());
+        assertEquals(2, queries.size());
+    }
+
+    private Supplier<Future<String>> query() {
+        return () -> {
+            Promise<String> promise = Promise.promise();
+            queries.add(promise);
+            return promise.future();
+        };
+    }
+}
@@ -0,0 +1,81 @@
+package com.salesmanagement.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * A 3 requests per 3 seconds limiter (one token a second, bursts of 3), driven through the
+ * {@code now} overload so refills don't depend on the wall clock.
+ */
+class RateLimiterTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final RateLimiter limiter = new RateLimiter(3, 3, TimeUnit.SECONDS);
+
+    @Test
+    void allowsBurstThenReportsWait() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("a", 0));
+        }
+        assertEquals(SECOND, limiter.tryAcquire("a", 0));
+        // A refused request takes nothing, so the wait only shrinks with time
+        assertEquals(SECOND / 2, limiter.tryAcquire("a", SECOND / 2));
+    }
+
+    @Test
+    void refillsOneTokenPerInterval() {
+        for (int i = 0; i < 3; i++) {
+            limiter.tryAcquire("a", 0);
+        }
+        assertEquals(0, limiter.tryAcquire("a", SECOND));
+        assertEquals(SECOND, limiter.tryAcquire("a", SECOND));
+
+        // Idle time refills the bucket, but never past the burst
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("a", 100 * SECOND));
+        }
+        assertEquals(SECOND, limiter.tryAcquire("a", 100 * SECOND));
+    }
+
+    @Test
+    void keysHaveSeparateBuckets() {
+        for (int i = 0; i < 3; i++) {
+            limiter.tryAcquire("a", 0);
+        }
+        assertEquals(0, limiter.tryAcquire("b", 0));
+        assertEquals(2, limiter.size());
+    }
+
+    @Test
+    void evictIdleDropsOnlyRefilledBuckets() {
+        long now = System.nanoTime();
+        limiter.tryAcquire("idle", now - 10 * SECOND);
+        limiter.tryAcquire("busy", now);
+
+        assertEquals(1, limiter.evictIdle());
+        assertEquals(1, limiter.size());
+        // The remaining bucket kept its state: two of its three tokens are left
+        assertEquals(0, limiter.tryAcquire("busy", now));
+        assertEquals(0, limiter.tryAcquire("busy", now));
+        assertEquals(SECOND, limiter.tryAcquire("busy", now));
+    }
+
+    @Test
+    void parsesSpec() {
+        assertNull(RateLimiter.fromSpec(" 0 "));
+
+        RateLimiter parsed = RateLimiter.fromSpec("2/10");
+        assertEquals(0, parsed.tryAcquire("a", 0));
+        assertEquals(0, parsed.tryAcquire("a", 0));
+        assertEquals(5 * SECOND, parsed.tryAcquire("a", 0));
+
+        assertThrows(IllegalArgumentException.class, () -> RateLimiter.fromSpec("10"));
+        assertThrows(IllegalArgumentException.class, () -> RateLimiter.fromSpec("ten/60"));
+        assertThrows(IllegalArgumentException.class, () -> RateLimiter.fromSpec("10/0"));
+    }
+}